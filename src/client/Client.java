@@ -1,22 +1,29 @@
 package client;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 //import java.util.Scanner;
 
 import exceptions.ExitProgram;
 import exceptions.ProtocolException;
 import exceptions.ServerUnavailableException;
-import game.Board;
-import game.ComputerPlayer;
+import game.GoBoard;
 import game.HumanPlayer;
 import game.Mark;
+import game.MctsPlayer;
 import game.Player;
+import protocol.BinaryProtocol;
 import protocol.ProtocolMessages;
 
 /**
@@ -24,6 +31,13 @@ import protocol.ProtocolMessages;
  */
 public class Client {
 
+	/**
+	 * Name of the system property with the extensions of the protocol this client
+	 * asks for, separated by commas (for example "delta,binary,stream"). None are
+	 * asked for by default, so the client speaks the plain text protocol.
+	 */
+	public static final String EXTENSIONS_PROPERTY = "go.extensions";
+
 	/**
 	 * The socket and in- and outputStreams.
 	 */
@@ -59,7 +73,35 @@ public class Client {
 	/**
 	 * The board this game is played in.
 	 */
-	private Board board;
+	private GoBoard board;
+
+	/**
+	 * Set to true if the server agreed to send only the moves and the captured
+	 * intersections instead of the whole board (the delta extension).
+	 */
+	private boolean delta;
+
+	/**
+	 * Set to true if the board of this client turned out to differ from the one of
+	 * the server, so that the whole board is asked for before the next move.
+	 */
+	private boolean needSync;
+
+	/**
+	 * Set to true if the server agreed to the binary extension, after which frames
+	 * are read from frameIn into inFrame and written from outFrame instead of
+	 * lines of text.
+	 */
+	private boolean binary;
+	private DataInputStream frameIn;
+	private ByteBuffer inFrame;
+	private ByteBuffer outFrame;
+
+	/**
+	 * Set to true if the server agreed to the stream extension, after which it
+	 * does not answer the moves of this client, but only sends the next turn.
+	 */
+	private boolean stream;
 
 	/**
 	 * Constructs a new Client. Initialises the view. Starts a new ComputerPlayer if
@@ -84,11 +126,12 @@ public class Client {
 			System.out.println("Connection to the server created!");
 			this.handleHello();
 			this.waitForStart();
-			this.board = new Board(this.boardSize, true);
+			this.board = GoBoard.newBoard(this.boardSize, true);
 			while (true) {
 				this.handleGameplay();
-				this.readLineFromServer();
-				// TODO process the response from the server on my move
+				if (!stream) {
+					this.handleResult();
+				}
 			}
 		} catch (ExitProgram | ServerUnavailableException | ProtocolException | IOException e) {
 			view.showMessage(e + " I will now disconnect.");
@@ -102,6 +145,10 @@ public class Client {
 	 * a move as response, which is then send back to the Server.
 	 */
 	private void handleGameplay() throws IOException, ProtocolException, ExitProgram, ServerUnavailableException {
+		if (binary) {
+			handleGameplayFrame();
+			return;
+		}
 		String line = this.readLineFromServer();
 		String[] lineSplit = line.split(ProtocolMessages.DELIMITER);
 		if (lineSplit[0] == null || !(lineSplit[0].contentEquals(String.valueOf(ProtocolMessages.TURN))
@@ -109,20 +156,22 @@ public class Client {
 			throw new ProtocolException("Error: server did not adhere to the protocol");
 		} else {
 			if (lineSplit[0].contentEquals(String.valueOf(ProtocolMessages.TURN))) {
-				if (lineSplit[2] == null || lineSplit[2].contentEquals(String.valueOf(ProtocolMessages.PASS))) {
-					// do nothing to the board
-				} else {
-					int intersec = Integer.parseInt(lineSplit[2]);
-					board.putStone(board.getCol(intersec), board.getRow(intersec), mark.other());
-				}
-				int move = this.player.makeMove(board);
-				// TODO give a user the ability to press Q to quit the game
-				if (move != -1) {
-					this.sendMessage(String.valueOf(ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + move));
+				if (delta) {
+					// T;move;captured
+					if (lineSplit.length < 2) {
+						throw new ProtocolException("Error: server did not send the last move");
+					}
+					applyOpponentMove(lineSplit[1]);
+					checkCaptured(lineSplit.length > 2 ? lineSplit[2] : "");
 				} else {
-					this.sendMessage(
-							String.valueOf(ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + ProtocolMessages.PASS));
+					// T;board;move
+					if (lineSplit.length < 3) {
+						throw new ProtocolException("Error: server did not send the board and the last move");
+					}
+					applyOpponentMove(lineSplit[2]);
+					checkBoard(lineSplit[1]);
 				}
+				this.makeMove();
 			} else {
 				if (lineSplit[0].contentEquals(String.valueOf(ProtocolMessages.END))) {
 					// TODO show why game has ended
@@ -131,6 +180,246 @@ public class Client {
 		}
 	}
 
+	/**
+	 * Does the same as handleGameplay, with the binary protocol: reads a TURN
+	 * frame, brings the board up to date with it, and sends a move.
+	 */
+	private void handleGameplayFrame()
+			throws IOException, ProtocolException, ExitProgram, ServerUnavailableException {
+		char command = this.readFrameFromServer();
+		if (command == ProtocolMessages.END) {
+			// TODO show why game has ended
+			return;
+		} else if (command != ProtocolMessages.TURN) {
+			throw new ProtocolException("Error: server did not adhere to the protocol");
+		}
+		if (delta) {
+			// move, captured
+			applyOpponentMove(BinaryProtocol.getMove(inFrame));
+			checkCaptured(inFrame);
+		} else {
+			// board, move
+			int boardStart = inFrame.position();
+			inFrame.position(boardStart + 1 + BinaryProtocol.packedLength(BinaryProtocol.getBoardSize(inFrame)));
+			applyOpponentMove(BinaryProtocol.getMove(inFrame));
+			checkBoard(inFrame, boardStart);
+		}
+		this.makeMove();
+	}
+
+	/**
+	 * Asks for the whole board if this client knows its board differs from the one
+	 * of the server, then lets the player determine a move and sends it to the
+	 * server.
+	 */
+	private void makeMove() throws ProtocolException, ExitProgram, ServerUnavailableException {
+		if (needSync) {
+			this.requestSync();
+		}
+		int move = this.player.makeMove(board);
+		// TODO give a user the ability to press Q to quit the game
+		if (binary) {
+			int start = BinaryProtocol.beginFrame(outFrame, ProtocolMessages.MOVE);
+			BinaryProtocol.putMove(outFrame, move);
+			BinaryProtocol.endFrame(outFrame, start);
+			this.sendFrame();
+		} else if (move != -1) {
+			this.sendMessage(String.valueOf(ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + move));
+		} else {
+			this.sendMessage(
+					String.valueOf(ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + ProtocolMessages.PASS));
+		}
+	}
+
+	/**
+	 * Reads the response of the server on the move of this client. The move itself
+	 * has already been made on the board of this client, so only the stones it
+	 * captured (delta extension) or the whole board are compared with what the
+	 * server has.
+	 */
+	private void handleResult() throws ProtocolException, ServerUnavailableException {
+		if (binary) {
+			if (this.readFrameFromServer() != ProtocolMessages.RESULT) {
+				throw new ProtocolException("Error: server did not send the result of my move");
+			}
+			if (BinaryProtocol.getChar(inFrame) != ProtocolMessages.VALID) {
+				needSync = true;
+			} else if (delta) {
+				// move, captured
+				BinaryProtocol.getMove(inFrame);
+				checkCaptured(inFrame);
+			} else {
+				// board
+				checkBoard(inFrame, inFrame.position());
+			}
+			return;
+		}
+		String line = this.readLineFromServer();
+		String[] lineSplit = line.split(ProtocolMessages.DELIMITER);
+		if (lineSplit.length < 2 || !lineSplit[0].contentEquals(String.valueOf(ProtocolMessages.RESULT))) {
+			throw new ProtocolException("Error: server did not send the result of my move");
+		}
+		if (!lineSplit[1].contentEquals(String.valueOf(ProtocolMessages.VALID))) {
+			// the server did not accept the move, so the boards differ for sure
+			needSync = true;
+		} else if (delta) {
+			// R;V;move;captured
+			checkCaptured(lineSplit.length > 3 ? lineSplit[3] : "");
+		} else if (lineSplit.length > 2) {
+			// R;V;board
+			checkBoard(lineSplit[2]);
+		}
+	}
+
+	/**
+	 * Makes the last move of the opponent (an intersection or P) on the board of
+	 * this client. If that is not possible, the boards differ and the whole board
+	 * will be asked for.
+	 */
+	private void applyOpponentMove(String move) {
+		if (move.contentEquals(String.valueOf(ProtocolMessages.PASS))) {
+			applyOpponentMove(-1);
+			return;
+		}
+		try {
+			applyOpponentMove(Integer.parseInt(move));
+		} catch (NumberFormatException e) {
+			needSync = true;
+		}
+	}
+
+	/**
+	 * Makes the last move of the opponent (an intersection or -1 for a pass) on the
+	 * board of this client, and tells the player. If that is not possible, the
+	 * boards differ and the whole board will be asked for.
+	 */
+	private void applyOpponentMove(int move) {
+		if (move != -1) {
+			try {
+				board.putStone(board.getCol(move), board.getRow(move), mark.other());
+			} catch (ExitProgram e) {
+				needSync = true;
+				return;
+			}
+		}
+		player.opponentMoved(move);
+	}
+
+	/**
+	 * Checks that the intersections the server says were captured (separated by
+	 * commas) are empty on the board of this client as well.
+	 */
+	private void checkCaptured(String captured) {
+		if (captured.isEmpty()) {
+			return;
+		}
+		try {
+			for (String intersec : captured.split(ProtocolMessages.LIST_DELIMITER)) {
+				checkCaptured(Integer.parseInt(intersec));
+			}
+		} catch (NumberFormatException e) {
+			needSync = true;
+		}
+	}
+
+	/**
+	 * Reads the intersections the server says were captured from a frame (their
+	 * number, then the intersections) and checks them like checkCaptured(String).
+	 */
+	private void checkCaptured(ByteBuffer frame) throws ProtocolException {
+		int count = BinaryProtocol.getVarint(frame);
+		for (int k = 0; k < count; k++) {
+			checkCaptured(BinaryProtocol.getVarint(frame));
+		}
+	}
+
+	/**
+	 * Checks that the provided intersection, which the server says was captured, is
+	 * empty on the board of this client as well.
+	 */
+	private void checkCaptured(int intersec) {
+		if (intersec < 0 || intersec >= boardSize * boardSize || board.getMark(intersec) != Mark.U) {
+			needSync = true;
+		}
+	}
+
+	/**
+	 * Checks that the board of this client is the same as the one sent by the
+	 * server, and makes it the same if it is not.
+	 */
+	private void checkBoard(String boardString) {
+		if (!boardString.equals(board.toString())) {
+			syncBoard(boardString);
+		}
+	}
+
+	/**
+	 * Checks that the board of this client is the same as the one in the frame,
+	 * which starts at the provided index, and makes it the same if it is not. The
+	 * marks are read right from the frame.
+	 */
+	private void checkBoard(ByteBuffer frame, int boardStart) throws ProtocolException {
+		if ((frame.get(boardStart) & 0xFF) != boardSize) {
+			throw new ProtocolException("Error: server sent a board of another size");
+		}
+		int intersections = boardSize * boardSize;
+		for (int i = 0; i < intersections; i++) {
+			setMark(i, BinaryProtocol.getMark(frame, boardStart + 1, i));
+		}
+		needSync = false;
+	}
+
+	/**
+	 * Asks the server for the whole board and makes the board of this client the
+	 * same.
+	 */
+	private void requestSync() throws ProtocolException, ServerUnavailableException {
+		if (binary) {
+			int start = BinaryProtocol.beginFrame(outFrame, ProtocolMessages.SYNC);
+			BinaryProtocol.endFrame(outFrame, start);
+			this.sendFrame();
+			if (this.readFrameFromServer() != ProtocolMessages.SYNC) {
+				throw new ProtocolException("Error: server did not send the board");
+			}
+			checkBoard(inFrame, inFrame.position());
+			return;
+		}
+		this.sendMessage(String.valueOf(ProtocolMessages.SYNC));
+		String line = this.readLineFromServer();
+		String[] lineSplit = line.split(ProtocolMessages.DELIMITER);
+		if (lineSplit.length < 2 || !lineSplit[0].contentEquals(String.valueOf(ProtocolMessages.SYNC))) {
+			throw new ProtocolException("Error: server did not send the board");
+		}
+		syncBoard(lineSplit[1]);
+	}
+
+	/**
+	 * Adds and removes stones until the board of this client is the same as the
+	 * provided string representation (one B, W or U per intersection).
+	 */
+	private void syncBoard(String boardString) {
+		int intersections = Math.min(boardString.length(), boardSize * boardSize);
+		for (int i = 0; i < intersections; i++) {
+			setMark(i, Mark.valueOf(String.valueOf(boardString.charAt(i))));
+		}
+		needSync = false;
+	}
+
+	/**
+	 * Adds or removes a stone at intersection i if needed to give it the provided
+	 * mark.
+	 */
+	private void setMark(int i, Mark wanted) {
+		if (board.getMark(i) != wanted) {
+			if (board.getMark(i) != Mark.U) {
+				board.removeStone(board.getCol(i), board.getRow(i));
+			}
+			if (wanted != Mark.U) {
+				board.addStone(board.getCol(i), board.getRow(i), wanted);
+			}
+		}
+	}
+
 	/**
 	 * Creates a connection to the server. Requests a name, the IP of the server and
 	 * the port to connect to. TODO Keeps requesting this until a connection is
@@ -154,7 +443,7 @@ public class Client {
 				view.showMessage("Attempting to connect to " + addr + " on port " + port + "...");
 
 				sock = new Socket(addr, port);
-				in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
+				// the reader is only created after the handshake, see handleHello()
 				out = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream()));
 			} catch (IOException e) {
 				view.showMessage("ERROR: could not create a socket on " + host + " and port " + port + ".");
@@ -200,15 +489,79 @@ public class Client {
 		}
 	}
 
+	/**
+	 * Reads the next frame from the server into inFrame and returns its command.
+	 * The position of inFrame is then at the first argument.
+	 */
+	private char readFrameFromServer() throws ServerUnavailableException, ProtocolException {
+		try {
+			frameIn.readFully(inFrame.array(), 0, BinaryProtocol.LENGTH_BYTES);
+			int length = BinaryProtocol.bodyLength(inFrame, 0);
+			frameIn.readFully(inFrame.array(), BinaryProtocol.LENGTH_BYTES, length);
+			inFrame.clear();
+			inFrame.limit(BinaryProtocol.LENGTH_BYTES + length);
+		} catch (IOException e) {
+			throw new ServerUnavailableException("Could not read from server.");
+		}
+		char command = BinaryProtocol.getCommand(inFrame);
+		view.showMessage("> [Server] Incoming frame: " + command);
+		return command;
+	}
+
+	/**
+	 * Sends the frame written in outFrame to the server, and empties outFrame for
+	 * the next one.
+	 */
+	private void sendFrame() throws ServerUnavailableException {
+		try {
+			sock.getOutputStream().write(outFrame.array(), 0, outFrame.position());
+		} catch (IOException e) {
+			view.showMessage(e.getMessage());
+			throw new ServerUnavailableException("Could not write to server.");
+		}
+		outFrame.clear();
+	}
+
+	/**
+	 * Reads the reply of the server to the handshake, one byte at a time, so that
+	 * nothing the server sends after it is read as well: if the binary extension
+	 * is used, that is not text.
+	 */
+	private String readHandshakeFromServer() throws ServerUnavailableException {
+		try {
+			InputStream stream = sock.getInputStream();
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b = stream.read();
+			while (b != -1 && b != '\n') {
+				line.write(b);
+				b = stream.read();
+			}
+			if (b == -1) {
+				throw new ServerUnavailableException("Could not read from server.");
+			}
+			String msg = new String(line.toByteArray(), StandardCharsets.US_ASCII).trim();
+			view.showMessage(("> [Server] Incoming: " + msg));
+			return msg;
+		} catch (IOException e) {
+			throw new ServerUnavailableException("Could not read from server.");
+		}
+	}
+
 	/**
 	 * Handles the server-client handshake as described in the protocol. Shows the
 	 * user via the TUI what the version of the protocol is and the (optional)
-	 * welcome message the server provided.
+	 * welcome message the server provided. Asks for the extensions set with
+	 * EXTENSIONS_PROPERTY, if any, and uses the ones the server confirms.
 	 */
 	public void handleHello() throws ServerUnavailableException, ProtocolException {
-		this.sendMessage(String.valueOf(ProtocolMessages.HANDSHAKE + ProtocolMessages.DELIMITER + "1.0"
-				+ ProtocolMessages.DELIMITER + this.myName + ProtocolMessages.DELIMITER + ProtocolMessages.BLACK));
-		String line = this.readLineFromServer();
+		String hello = ProtocolMessages.HANDSHAKE + ProtocolMessages.DELIMITER + "1.0" + ProtocolMessages.DELIMITER
+				+ this.myName + ProtocolMessages.DELIMITER + ProtocolMessages.BLACK;
+		String extensions = System.getProperty(EXTENSIONS_PROPERTY, "");
+		if (!extensions.isEmpty()) {
+			hello = hello + ProtocolMessages.DELIMITER + ProtocolMessages.DELIMITER + extensions;
+		}
+		this.sendMessage(hello);
+		String line = this.readHandshakeFromServer();
 		String[] lineSplit = line.split(ProtocolMessages.DELIMITER);
 		if (lineSplit[0] == null || !lineSplit[0].contentEquals(String.valueOf(ProtocolMessages.HANDSHAKE))) {
 			throw new ProtocolException("Error: server did not give the handshake");
@@ -222,6 +575,20 @@ public class Client {
 				} else {
 					view.showMessage(lineSplit[2]);
 				}
+				delta = lineSplit.length > 3 && lineSplit[3].contains(ProtocolMessages.DELTA);
+				binary = lineSplit.length > 3 && lineSplit[3].contains(ProtocolMessages.BINARY);
+				stream = lineSplit.length > 3 && lineSplit[3].contains(ProtocolMessages.STREAM);
+				try {
+					if (binary) {
+						frameIn = new DataInputStream(new BufferedInputStream(sock.getInputStream()));
+						inFrame = ByteBuffer.allocate(BinaryProtocol.MAX_FRAME);
+						outFrame = ByteBuffer.allocate(BinaryProtocol.MAX_FRAME);
+					} else {
+						in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
+					}
+				} catch (IOException e) {
+					throw new ServerUnavailableException("Could not read from server.");
+				}
 			}
 		}
 	}
@@ -233,6 +600,15 @@ public class Client {
 	 * decide on whether he wants to play himself or create a computer player.
 	 */
 	public void waitForStart() throws ServerUnavailableException, ProtocolException {
+		if (binary) {
+			if (this.readFrameFromServer() != ProtocolMessages.GAME) {
+				throw new ProtocolException("Error: server gave another command than the one for starting a game");
+			}
+			char colour = BinaryProtocol.getChar(inFrame);
+			this.boardSize = BinaryProtocol.getBoardSize(inFrame);
+			this.startGame(colour);
+			return;
+		}
 		String line = this.readLineFromServer();
 		String[] lineSplit = line.split(ProtocolMessages.DELIMITER);
 		if (lineSplit[0] == null || !lineSplit[0].contentEquals(String.valueOf(ProtocolMessages.GAME))) {
@@ -241,36 +617,44 @@ public class Client {
 			if (!(lineSplit.length > 1) || lineSplit[1] == null) {
 				throw new ProtocolException("Error: server did not send the board");
 			} else {
-				view.showMessage("We will start a game.");
 				this.boardSize = (int) Math.sqrt(lineSplit[1].length());
-				view.showMessage(
-						"The amount of intersections on the board will be : " + boardSize + " x " + boardSize + ".");
 				if (!(lineSplit.length > 2) || lineSplit[2] == null) {
 					throw new ProtocolException("Error: server did not provide a color");
 				} else {
-					view.showMessage("There are black and white stones. Your colour will be: " + lineSplit[2] + ".");
-					if (lineSplit[2].charAt(0) == ProtocolMessages.BLACK) {
-						this.mark = Mark.B;
-					} else if (lineSplit[2].charAt(0) == ProtocolMessages.WHITE) {
-						this.mark = Mark.W;
-					} else {
-						throw new ProtocolException("Error: server did not provide a valid color");
-					}
-					try {
-						if (view.getBoolean("Do you want to start an AI player? (y/n)")) {
-							this.player = new ComputerPlayer(myName, mark);
-						} else {
-							this.player = new HumanPlayer(myName, mark);
-						}
-					} catch (ExitProgram e) {
-						view.showMessage(e + " I will now disconnect.");
-						closeConnection();
-					}
+					this.startGame(lineSplit[2].charAt(0));
 				}
 			}
 		}
 	}
 
+	/**
+	 * Shows the user via the TUI what the size of the board and his colour will
+	 * be, and lets the user decide on whether he wants to play himself or create a
+	 * computer player.
+	 */
+	private void startGame(char colour) throws ProtocolException {
+		view.showMessage("We will start a game.");
+		view.showMessage("The amount of intersections on the board will be : " + boardSize + " x " + boardSize + ".");
+		view.showMessage("There are black and white stones. Your colour will be: " + colour + ".");
+		if (colour == ProtocolMessages.BLACK) {
+			this.mark = Mark.B;
+		} else if (colour == ProtocolMessages.WHITE) {
+			this.mark = Mark.W;
+		} else {
+			throw new ProtocolException("Error: server did not provide a valid color");
+		}
+		try {
+			if (view.getBoolean("Do you want to start an AI player? (y/n)")) {
+				this.player = new MctsPlayer(myName, mark);
+			} else {
+				this.player = new HumanPlayer(myName, mark);
+			}
+		} catch (ExitProgram e) {
+			view.showMessage(e + " I will now disconnect.");
+			closeConnection();
+		}
+	}
+
 	/**
 	 * Sends a message to the server indicating that this client will quit. Does not
 	 * wait for response, just closes the connection.
@@ -287,7 +671,12 @@ public class Client {
 	public void closeConnection() {
 		System.out.println("Closing the connection...");
 		try {
-			in.close();
+			if (in != null) {
+				in.close();
+			}
+			if (frameIn != null) {
+				frameIn.close();
+			}
 			out.close();
 			// sock.close();
 		} catch (IOException e) {
@@ -0,0 +1,137 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Counts the score of a board situation with area scoring: every stone is a
+ * point for its colour, and every empty area is worth a point per intersection
+ * for the colour that is the only one bordering it. An empty area bordered by
+ * both colours (or by none) counts for nobody. The board is walked once, empty
+ * areas are filled with an explicit stack instead of recursion, and nothing is
+ * allocated after construction, so one scorer can score every playout of a
+ * search.
+ */
+public class AreaScorer {
+
+	/**
+	 * The size of the boards this scorer counts.
+	 */
+	private int boardSize;
+
+	/**
+	 * Scratch space: an intersection has been visited in the current count when
+	 * its entry equals visitStamp.
+	 */
+	private int[] visited;
+	private int visitStamp;
+
+	/**
+	 * Scratch stack for filling empty areas.
+	 */
+	private int[] stack;
+
+	/**
+	 * The points of black and white found by the last count (without Komi).
+	 */
+	private int black;
+	private int white;
+
+	/**
+	 * Creates a scorer for boards of the provided size.
+	 */
+	public AreaScorer(int boardSize) {
+		this.boardSize = boardSize;
+		visited = new int[boardSize * boardSize];
+		stack = new int[boardSize * boardSize];
+	}
+
+	/**
+	 * Counts the points of black and white in the provided board situation, which
+	 * holds ArrayBoard.EMPTY, BLACK or WHITE for every intersection. The result is
+	 * available through getBlack() and getWhite().
+	 */
+	public void count(byte[] colour) {
+		black = 0;
+		white = 0;
+		visitStamp++;
+		if (visitStamp == 0) {
+			Arrays.fill(visited, 0);
+			visitStamp = 1;
+		}
+		for (int i = 0; i < colour.length; i++) {
+			if (colour[i] == ArrayBoard.BLACK) {
+				black++;
+			} else if (colour[i] == ArrayBoard.WHITE) {
+				white++;
+			} else if (visited[i] != visitStamp) {
+				fillArea(colour, i);
+			}
+		}
+	}
+
+	/**
+	 * Fills the empty area that intersection i belongs to and gives its points to
+	 * the colour bordering it, if there is only one. The colours of the stones
+	 * bordering the area are collected as bits (BLACK is 1, WHITE is 2).
+	 */
+	private void fillArea(byte[] colour, int i) {
+		int size = 0;
+		int borders = 0;
+		int top = 0;
+		stack[top++] = i;
+		visited[i] = visitStamp;
+		while (top > 0) {
+			int s = stack[--top];
+			size++;
+			for (int d = 0; d < 4; d++) {
+				int nb = neighbour(s, d);
+				if (nb == -1) {
+					continue;
+				}
+				if (colour[nb] != ArrayBoard.EMPTY) {
+					borders |= colour[nb];
+				} else if (visited[nb] != visitStamp) {
+					visited[nb] = visitStamp;
+					stack[top++] = nb;
+				}
+			}
+		}
+		if (borders == ArrayBoard.BLACK) {
+			black += size;
+		} else if (borders == ArrayBoard.WHITE) {
+			white += size;
+		}
+	}
+
+	/**
+	 * Returns neighbour d (0 to 3: left, right, up, down) of intersection i, or -1
+	 * if i lies at that edge of the board.
+	 */
+	private int neighbour(int i, int d) {
+		switch (d) {
+		case 0:
+			return i % boardSize != 0 ? i - 1 : -1;
+		case 1:
+			return i % boardSize != boardSize - 1 ? i + 1 : -1;
+		case 2:
+			return i >= boardSize ? i - boardSize : -1;
+		default:
+			return i < visited.length - boardSize ? i + boardSize : -1;
+		}
+	}
+
+	/**
+	 * Returns the points of black found by the last count.
+	 */
+	public int getBlack() {
+		return black;
+	}
+
+	/**
+	 * Returns the points of white found by the last count, without Komi.
+	 */
+	public int getWhite() {
+		return white;
+	}
+
+}
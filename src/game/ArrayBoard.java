@@ -0,0 +1,1027 @@
+package game;
+
+import java.util.Arrays;
+
+import exceptions.ExitProgram;
+
+/**
+ * A board on which a game of Go is played that keeps the whole position in flat
+ * primitive arrays instead of a graph of Intersec and Chain objects. Every
+ * intersection is an index into these arrays, the same index as used by the
+ * protocol (row * boardSize + col).
+ */
+public class ArrayBoard implements GoBoard {
+
+	/**
+	 * The values stored in the colour array. These are equal to the ordinals of
+	 * Mark.U, Mark.B and Mark.W.
+	 */
+	public static final byte EMPTY = 0;
+	public static final byte BLACK = 1;
+	public static final byte WHITE = 2;
+
+	/**
+	 * The marks, indexed by the values of the colour array.
+	 */
+	private static final Mark[] MARKS = Mark.values();
+
+	/**
+	 * The size of the board.
+	 */
+	private int boardSize;
+
+	/**
+	 * The colour of the stone on every intersection (EMPTY, BLACK or WHITE).
+	 */
+	private byte[] colour;
+
+	/**
+	 * The number of intersections of every colour, indexed by colour: count[EMPTY]
+	 * is the number of empty intersections, count[BLACK] and count[WHITE] the
+	 * number of stones of each player. Kept up to date whenever a stone is added
+	 * or removed, so checking whether the board is full never needs a scan.
+	 */
+	private int[] count;
+
+	/**
+	 * The number of moves made on this board (see getMoveCount()), and the number
+	 * of moves after which gameOver() returns true even if the board is not full.
+	 */
+	private int moveCount;
+	private int moveLimit = Integer.MAX_VALUE;
+
+	/**
+	 * Union-find parent of every stone. Following the parents from a stone ends at
+	 * the root of its chain, which identifies the chain. Meaningless for empty
+	 * intersections.
+	 */
+	private int[] parent;
+
+	/**
+	 * For every chain root, the number of stones in the chain (used for union by
+	 * size).
+	 */
+	private int[] chainSize;
+
+	/**
+	 * For every stone, the next stone of the same chain. The stones of a chain
+	 * form a ring, so a chain can be walked starting from any of its stones.
+	 */
+	private int[] nextStone;
+
+	/**
+	 * For every chain root, the number of pseudo-liberties of the chain: every
+	 * pair of a stone of the chain and an empty neighbour counts once, so a
+	 * liberty shared by several stones is counted several times. It is zero if and
+	 * only if the chain has no liberties, which is all a capture check needs, and
+	 * it can be kept up to date with a simple increment or decrement.
+	 */
+	private int[] pseudoLiberties;
+
+	/**
+	 * The neighbours of intersection i are neighbours[neighbourStart[i]] up to (but
+	 * not including) neighbours[neighbourStart[i + 1]]. Computed once when the
+	 * board is created.
+	 */
+	private int[] neighbourStart;
+	private int[] neighbours;
+
+	/**
+	 * The diagonal neighbours of intersection i, stored the same way as the
+	 * neighbours: diagonals[diagonalStart[i]] up to diagonals[diagonalStart[i +
+	 * 1]]. Only used by the eye test of random playouts.
+	 */
+	private int[] diagonalStart;
+	private int[] diagonals;
+
+	/**
+	 * The empty intersections, in no particular order: emptyList[0] up to (but not
+	 * including) emptyList[count[EMPTY]], and for every empty intersection its
+	 * position in that list. Kept up to date whenever the colour of an
+	 * intersection changes (a stone taken out of the list is replaced by the last
+	 * one), so a random playout can pick its moves without scanning the board.
+	 */
+	private int[] emptyList;
+	private int[] emptyIndex;
+
+	/**
+	 * Scratch space used to visit every intersection at most once when counting
+	 * liberties or filling areas. An intersection counts as visited when its entry
+	 * equals visitStamp, so resetting is a matter of incrementing the stamp.
+	 */
+	private int[] visited;
+	private int visitStamp;
+
+	/**
+	 * Scratch stack used when walking over a chain or an empty area.
+	 */
+	private int[] stack;
+
+	/**
+	 * The listeners told about every stone that is added or removed (such as the
+	 * GUI). Checked for being empty first on the hot paths.
+	 */
+	private BoardListeners listeners;
+
+	/**
+	 * Counts the score of this board, created the first time it is needed.
+	 */
+	private AreaScorer scorer;
+
+	/**
+	 * The final score of the player whose Mark is B.
+	 */
+	double blackScore;
+
+	/**
+	 * The final score of the player whose Mark is W, including a Komi of 0.5.
+	 */
+	double whiteScore;
+
+	/**
+	 * The Zobrist keys for this board size and the Zobrist hash of the current
+	 * board situation, updated whenever a stone is added or removed.
+	 */
+	private long[] keys;
+	private long hash;
+
+	/**
+	 * Keeps track of all previous board situations (used for Ko-rule).
+	 */
+	private PositionHistory history;
+
+	/**
+	 * The undo log of the moves made with play(int, Mark), one entry per move: the
+	 * intersection (-1 for a pass), the hash before the move and the position in
+	 * the captured log where the stones this move took off the board start.
+	 */
+	private int undoTop;
+	private int[] undoMove;
+	private long[] undoHash;
+	private int[] undoCaptured;
+
+	/**
+	 * The stones taken off the board by the moves in the undo log, together with
+	 * their colour.
+	 */
+	private int capturedTop;
+	private int[] captured;
+	private byte[] capturedColour;
+
+	/**
+	 * Creates an empty board and precomputes the neighbours of every intersection.
+	 * If gui is set to true, a GUI is started and subscribed to the board;
+	 * otherwise the board is headless and never touches the GUI library.
+	 */
+	public ArrayBoard(int boardSize, boolean gui) {
+		this.boardSize = boardSize;
+		int points = boardSize * boardSize;
+		allocate(points);
+		neighbourStart = new int[points + 1];
+		neighbours = new int[4 * points];
+		int n = 0;
+		for (int i = 0; i < points; i++) {
+			neighbourStart[i] = n;
+			int col = getCol(i);
+			int row = getRow(i);
+			if (col != 0) {
+				neighbours[n++] = i - 1;
+			}
+			if (col != boardSize - 1) {
+				neighbours[n++] = i + 1;
+			}
+			if (row != 0) {
+				neighbours[n++] = i - boardSize;
+			}
+			if (row != boardSize - 1) {
+				neighbours[n++] = i + boardSize;
+			}
+		}
+		neighbourStart[points] = n;
+		diagonalStart = new int[points + 1];
+		diagonals = new int[4 * points];
+		n = 0;
+		for (int i = 0; i < points; i++) {
+			diagonalStart[i] = n;
+			int col = getCol(i);
+			int row = getRow(i);
+			for (int dr = -1; dr <= 1; dr += 2) {
+				for (int dc = -1; dc <= 1; dc += 2) {
+					if (col + dc >= 0 && col + dc < boardSize && row + dr >= 0 && row + dr < boardSize) {
+						diagonals[n++] = coorToInt(col + dc, row + dr);
+					}
+				}
+			}
+		}
+		diagonalStart[points] = n;
+		listeners = new BoardListeners();
+		if (gui) {
+			listeners.add(new GuiBoardListener(boardSize));
+		}
+		keys = Zobrist.keys(points);
+		this.history = new PositionHistory();
+	}
+
+	/**
+	 * Creates a headless copy of the provided board, without any listeners. The
+	 * neighbour tables and Zobrist keys never change, so they are shared with the
+	 * original instead of copied.
+	 */
+	private ArrayBoard(ArrayBoard original) {
+		this.boardSize = original.boardSize;
+		allocate(boardSize * boardSize);
+		neighbourStart = original.neighbourStart;
+		neighbours = original.neighbours;
+		diagonalStart = original.diagonalStart;
+		diagonals = original.diagonals;
+		keys = original.keys;
+		listeners = new BoardListeners();
+		this.history = new PositionHistory();
+		copyFrom(original);
+	}
+
+	/**
+	 * Allocates the arrays that describe the position and the scratch space of a
+	 * board with the provided number of intersections.
+	 */
+	private void allocate(int points) {
+		colour = new byte[points];
+		count = new int[] { points, 0, 0 };
+		parent = new int[points];
+		chainSize = new int[points];
+		nextStone = new int[points];
+		pseudoLiberties = new int[points];
+		visited = new int[points];
+		stack = new int[points];
+		undoMove = new int[points];
+		undoHash = new long[points];
+		undoCaptured = new int[points];
+		captured = new int[points];
+		capturedColour = new byte[points];
+		emptyList = new int[points];
+		emptyIndex = new int[points];
+		for (int i = 0; i < points; i++) {
+			emptyList[i] = i;
+			emptyIndex[i] = i;
+		}
+	}
+
+	/**
+	 * Makes this board a copy of the other board, which should have the same size:
+	 * the stones, the chains, the hash and the Ko history are copied with a few
+	 * bulk array copies, together with the stone counts and the number of moves
+	 * made. The move limit of this board stays as it was. The undo log of this
+	 * board is cleared rather than copied, and its listeners are not told, so this
+	 * is meant for headless boards (such as the scratch boards of a search).
+	 */
+	public void copyFrom(ArrayBoard other) {
+		if (other.boardSize != boardSize) {
+			throw new IllegalArgumentException("Cannot copy a board of size " + other.boardSize
+					+ " onto a board of size " + boardSize + "!");
+		}
+		int points = colour.length;
+		System.arraycopy(other.colour, 0, colour, 0, points);
+		System.arraycopy(other.parent, 0, parent, 0, points);
+		System.arraycopy(other.chainSize, 0, chainSize, 0, points);
+		System.arraycopy(other.nextStone, 0, nextStone, 0, points);
+		System.arraycopy(other.pseudoLiberties, 0, pseudoLiberties, 0, points);
+		System.arraycopy(other.count, 0, count, 0, count.length);
+		System.arraycopy(other.emptyList, 0, emptyList, 0, points);
+		System.arraycopy(other.emptyIndex, 0, emptyIndex, 0, points);
+		moveCount = other.moveCount;
+		hash = other.hash;
+		history.copyFrom(other.history);
+		undoTop = 0;
+		capturedTop = 0;
+	}
+
+	/**
+	 * Returns a headless copy of this board (see copyFrom(ArrayBoard)).
+	 */
+	@Override
+	public ArrayBoard clone() {
+		return new ArrayBoard(this);
+	}
+
+	@Override
+	public int getBoardSize() {
+		return boardSize;
+	}
+
+	@Override
+	public int coorToInt(int col, int row) {
+		return row * this.boardSize + col;
+	}
+
+	@Override
+	public int getCol(int i) {
+		return i % this.boardSize;
+	}
+
+	@Override
+	public int getRow(int i) {
+		return i / this.boardSize;
+	}
+
+	@Override
+	public Mark getMark(int i) {
+		return MARKS[colour[i]];
+	}
+
+	/**
+	 * Returns the colour (EMPTY, BLACK or WHITE) of intersection i.
+	 */
+	public byte getColour(int i) {
+		return colour[i];
+	}
+
+	/**
+	 * Returns the k-th empty intersection, for k from 0 up to getCount(Mark.U).
+	 * The order is arbitrary and changes as stones are added and removed.
+	 */
+	public int getEmpty(int k) {
+		return emptyList[k];
+	}
+
+	/**
+	 * Returns true if the empty intersection i looks like an eye of the player
+	 * with the provided mark: all its neighbours are stones of that player, and
+	 * the opponent holds at most one of its diagonals (none on the edge of the
+	 * board). Cheap and only local, so it can be wrong, but good enough to keep
+	 * random playouts from filling their own eyes.
+	 */
+	public boolean isEye(int i, Mark mark) {
+		byte c = (byte) mark.ordinal();
+		for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+			if (colour[neighbours[n]] != c) {
+				return false;
+			}
+		}
+		int opponent = 0;
+		for (int n = diagonalStart[i]; n < diagonalStart[i + 1]; n++) {
+			byte d = colour[diagonals[n]];
+			if (d != EMPTY && d != c) {
+				opponent++;
+			}
+		}
+		return opponent == 0 || (opponent == 1 && diagonalStart[i + 1] - diagonalStart[i] == 4);
+	}
+
+	/**
+	 * Returns the number of liberties of the chain the stone on intersection i
+	 * belongs to, not counting any liberty twice. Walks over the whole chain, so
+	 * should not be used for capture checks. Should only be called for occupied
+	 * intersections.
+	 */
+	public int getLiberties(int i) {
+		return countLiberties(find(i));
+	}
+
+	/**
+	 * Returns the number of pseudo-liberties of the chain the stone on
+	 * intersection i belongs to: an empty intersection next to several stones of
+	 * the chain is counted once for each of them. Should only be called for
+	 * occupied intersections.
+	 */
+	public int getPseudoLiberties(int i) {
+		return pseudoLiberties[find(i)];
+	}
+
+	/**
+	 * Returns the number of stones of the chain the stone on intersection i
+	 * belongs to. Should only be called for occupied intersections.
+	 */
+	public int getChainSize(int i) {
+		return chainSize[find(i)];
+	}
+
+	/**
+	 * Returns the Zobrist hash of the current board situation.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Turns on (or off) the comparison of full board situations when the hash of
+	 * a new situation has been seen before, which rules out hash collisions in the
+	 * Ko-rule. Should be called before the first stone is placed.
+	 */
+	public void setFullPositionCheck(boolean fullCheck) {
+		history.setFullCheck(fullCheck);
+	}
+
+	/**
+	 * Returns true if the chain the stone on intersection i belongs to has no
+	 * liberties left. Should only be called for occupied intersections.
+	 */
+	public boolean isCaptured(int i) {
+		return pseudoLiberties[find(i)] == 0;
+	}
+
+	/**
+	 * Returns true if the stones on intersections i and j belong to the same chain.
+	 */
+	public boolean sameChain(int i, int j) {
+		return colour[i] != EMPTY && colour[i] == colour[j] && find(i) == find(j);
+	}
+
+	/**
+	 * Returns the root of the chain the stone on intersection i belongs to. Halves
+	 * the path on the way up, so later look-ups of the same stones are cheaper.
+	 */
+	private int find(int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	@Override
+	public boolean isUnoccupied(int i) throws ExitProgram {
+		if (i < 0 || i >= colour.length) {
+			throw new ExitProgram("You have provided an intersection that is not on the board!");
+		}
+		return colour[i] == EMPTY;
+	}
+
+	/**
+	 * Works out the hash of the board situation after the move from the
+	 * neighbouring chains only: a neighbouring chain whose pseudo-liberties all
+	 * come from stones next to the move has the move as its only liberty. Nothing
+	 * is allocated and nothing on the board is changed.
+	 */
+	@Override
+	public boolean isLegal(int move, Mark mark) {
+		if (move == -1) {
+			return true;
+		}
+		if (move < 0 || move >= colour.length || colour[move] != EMPTY) {
+			return false;
+		}
+		byte c = (byte) mark.ordinal();
+		long h = hash ^ keys[2 * move + c - 1];
+		boolean captures = false;
+		boolean suicide = true;
+		for (int n = neighbourStart[move]; n < neighbourStart[move + 1]; n++) {
+			int nb = neighbours[n];
+			if (colour[nb] == EMPTY) {
+				suicide = false;
+			} else {
+				int root = find(nb);
+				if (!seenBefore(move, n, root)) {
+					boolean lastLiberty = pseudoLiberties[root] == stonesNextTo(move, root);
+					if (colour[nb] != c && lastLiberty) {
+						captures = true;
+						h ^= chainHash(root);
+					} else if (colour[nb] == c && !lastLiberty) {
+						suicide = false;
+					}
+				}
+			}
+		}
+		if (suicide && !captures) {
+			h ^= keys[2 * move + c - 1];
+			for (int n = neighbourStart[move]; n < neighbourStart[move + 1]; n++) {
+				int nb = neighbours[n];
+				if (colour[nb] == c && !seenBefore(move, n, find(nb))) {
+					h ^= chainHash(find(nb));
+				}
+			}
+		}
+		return !history.wouldRepeat(h, () -> situationAfter(move, mark));
+	}
+
+	/**
+	 * Returns the board situation (as returned by toString) after mark plays on
+	 * the empty intersection move, with captures and suicide taken into account.
+	 * Only needed for the full check of the Ko-rule.
+	 */
+	private String situationAfter(int move, Mark mark) {
+		char[] s = toString().toCharArray();
+		byte c = (byte) mark.ordinal();
+		s[move] = mark.name().charAt(0);
+		boolean captures = false;
+		boolean suicide = true;
+		for (int n = neighbourStart[move]; n < neighbourStart[move + 1]; n++) {
+			int nb = neighbours[n];
+			if (colour[nb] == EMPTY) {
+				suicide = false;
+			} else {
+				int root = find(nb);
+				boolean lastLiberty = pseudoLiberties[root] == stonesNextTo(move, root);
+				if (colour[nb] != c && lastLiberty) {
+					captures = true;
+					clearChain(s, root);
+				} else if (colour[nb] == c && !lastLiberty) {
+					suicide = false;
+				}
+			}
+		}
+		if (suicide && !captures) {
+			s[move] = 'U';
+			for (int n = neighbourStart[move]; n < neighbourStart[move + 1]; n++) {
+				if (colour[neighbours[n]] == c) {
+					clearChain(s, find(neighbours[n]));
+				}
+			}
+		}
+		return new String(s);
+	}
+
+	/**
+	 * Marks the stones of the chain with the provided root as empty in the
+	 * situation s.
+	 */
+	private void clearChain(char[] s, int root) {
+		int stone = root;
+		do {
+			s[stone] = 'U';
+			stone = nextStone[stone];
+		} while (stone != root);
+	}
+
+	/**
+	 * Returns true if one of the neighbours of move before neighbours[n] is a
+	 * stone of the chain with the provided root.
+	 */
+	private boolean seenBefore(int move, int n, int root) {
+		for (int k = neighbourStart[move]; k < n; k++) {
+			if (colour[neighbours[k]] != EMPTY && find(neighbours[k]) == root) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of neighbours of intersection i that are stones of the
+	 * chain with the provided root.
+	 */
+	private int stonesNextTo(int i, int root) {
+		int count = 0;
+		for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+			if (colour[neighbours[n]] != EMPTY && find(neighbours[n]) == root) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the XOR of the Zobrist keys of all stones of the chain with the
+	 * provided root, which is what the hash changes by when the chain is removed.
+	 */
+	private long chainHash(int root) {
+		long h = 0;
+		int s = root;
+		do {
+			h ^= keys[2 * s + colour[s] - 1];
+			s = nextStone[s];
+		} while (s != root);
+		return h;
+	}
+
+	/**
+	 * Adds a stone to the board and tells the listeners. Every neighbouring chain
+	 * loses the pseudo-liberty the stone was placed on, after which the new stone
+	 * forms a chain together with all neighbouring chains of the same colour.
+	 */
+	@Override
+	public void addStone(int col, int row, Mark mark) {
+		int i = coorToInt(col, row);
+		if (!listeners.isEmpty()) {
+			listeners.stoneAdded(col, row, mark);
+		}
+		byte c = (byte) mark.ordinal();
+		colour[i] = c;
+		removeEmpty(i);
+		count[c]++;
+		hash ^= keys[2 * i + c - 1];
+		parent[i] = i;
+		chainSize[i] = 1;
+		nextStone[i] = i;
+		int libs = 0;
+		for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+			int nb = neighbours[n];
+			if (colour[nb] == EMPTY) {
+				libs++;
+			} else {
+				pseudoLiberties[find(nb)]--;
+			}
+		}
+		pseudoLiberties[i] = libs;
+		for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+			int nb = neighbours[n];
+			if (colour[nb] == c) {
+				joinChains(find(i), find(nb));
+			}
+		}
+	}
+
+	/**
+	 * Removes a stone from the board and tells the listeners. The chain the stone
+	 * belonged to may fall apart, so the chains of all neighbouring stones are
+	 * rebuilt.
+	 */
+	@Override
+	public void removeStone(int col, int row) {
+		int i = coorToInt(col, row);
+		if (colour[i] == EMPTY) {
+			return;
+		}
+		if (!listeners.isEmpty()) {
+			listeners.stoneRemoved(col, row);
+		}
+		hash ^= keys[2 * i + colour[i] - 1];
+		count[colour[i]]--;
+		addEmpty(i);
+		colour[i] = EMPTY;
+		for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+			int nb = neighbours[n];
+			if (colour[nb] != EMPTY) {
+				rebuildChain(nb);
+			}
+		}
+	}
+
+	/**
+	 * Put a stone on the board at the provided column and row. Remove any chains
+	 * of the opponent player that have no liberties anymore, then remove the chain
+	 * of the stone itself if it has no liberties anymore. Finally updates the board
+	 * situations with this new board situation (for enforcing the Ko-rule).
+	 *
+	 * @throws ExitProgram if the intersection is occupied or the Ko-rule has been
+	 *                     violated
+	 */
+	@Override
+	public void putStone(int col, int row, Mark mark) throws ExitProgram {
+		int i = coorToInt(col, row);
+		if (!isUnoccupied(i)) {
+			throw new ExitProgram("Cannot place a stone at an intersection where there already is one!");
+		}
+		moveCount++;
+		addStone(col, row, mark);
+		byte other = (byte) mark.other().ordinal();
+		for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+			int nb = neighbours[n];
+			if (colour[nb] == other && isCaptured(nb)) {
+				removeChain(nb);
+			}
+		}
+		if (isCaptured(i)) {
+			removeChain(i);
+		}
+		addBoardSituation();
+	}
+
+	/**
+	 * Makes the move (an intersection, or -1 for a pass) for the player with the
+	 * provided mark, and remembers what is needed to take it back with undo().
+	 * Returns false, without changing the board, if the move is not legal. Meant
+	 * for search: a search can make and take back moves on a single board without
+	 * copying it.
+	 */
+	public boolean play(int move, Mark mark) {
+		if (!isLegal(move, mark)) {
+			return false;
+		}
+		if (undoTop == undoMove.length) {
+			undoMove = Arrays.copyOf(undoMove, 2 * undoTop);
+			undoHash = Arrays.copyOf(undoHash, 2 * undoTop);
+			undoCaptured = Arrays.copyOf(undoCaptured, 2 * undoTop);
+		}
+		undoMove[undoTop] = move;
+		undoHash[undoTop] = hash;
+		undoCaptured[undoTop] = capturedTop;
+		undoTop++;
+		moveCount++;
+		if (move != -1) {
+			addStone(getCol(move), getRow(move), mark);
+			byte other = (byte) mark.other().ordinal();
+			for (int n = neighbourStart[move]; n < neighbourStart[move + 1]; n++) {
+				int nb = neighbours[n];
+				if (colour[nb] == other && isCaptured(nb)) {
+					logChain(nb);
+					removeChain(nb);
+				}
+			}
+			if (isCaptured(move)) {
+				logChain(move);
+				removeChain(move);
+			}
+			history.add(hash, this);
+		}
+		return true;
+	}
+
+	/**
+	 * Takes back the last move made with play(int, Mark): the captured stones are
+	 * put back, the stone of the move is removed, the chains around it are
+	 * rebuilt and the board situation is removed from the Ko history again.
+	 * Returns false if there is no move to take back.
+	 */
+	public boolean undo() {
+		if (undoTop == 0) {
+			return false;
+		}
+		undoTop--;
+		moveCount--;
+		int move = undoMove[undoTop];
+		if (move != -1) {
+			history.remove(hash, this);
+			int from = undoCaptured[undoTop];
+			for (int k = from; k < capturedTop; k++) {
+				int s = captured[k];
+				colour[s] = capturedColour[k];
+				removeEmpty(s);
+				count[colour[s]]++;
+				parent[s] = -1;
+				hash ^= keys[2 * s + colour[s] - 1];
+				if (!listeners.isEmpty()) {
+					listeners.stoneAdded(getCol(s), getRow(s), MARKS[colour[s]]);
+				}
+			}
+			for (int k = from; k < capturedTop; k++) {
+				int s = captured[k];
+				for (int n = neighbourStart[s]; n < neighbourStart[s + 1]; n++) {
+					int nb = neighbours[n];
+					if (colour[nb] != EMPTY && colour[nb] != colour[s]) {
+						pseudoLiberties[find(nb)]--;
+					}
+				}
+			}
+			for (int k = from; k < capturedTop; k++) {
+				if (parent[captured[k]] == -1) {
+					rebuildChain(captured[k]);
+				}
+			}
+			capturedTop = from;
+			removeStone(getCol(move), getRow(move));
+		}
+		hash = undoHash[undoTop];
+		return true;
+	}
+
+	/**
+	 * Returns the number of moves that can be taken back with undo().
+	 */
+	public int getUndoDepth() {
+		return undoTop;
+	}
+
+	/**
+	 * Adds the stones of the chain the stone on intersection i belongs to, and
+	 * their colour, to the captured log.
+	 */
+	private void logChain(int i) {
+		int root = find(i);
+		int s = root;
+		do {
+			if (capturedTop == captured.length) {
+				captured = Arrays.copyOf(captured, 2 * capturedTop);
+				capturedColour = Arrays.copyOf(capturedColour, 2 * capturedTop);
+			}
+			captured[capturedTop] = s;
+			capturedColour[capturedTop] = colour[s];
+			capturedTop++;
+			s = nextStone[s];
+		} while (s != root);
+	}
+
+	/**
+	 * Moves on to a new visit stamp, clearing the visited array in the rare case
+	 * the stamp wraps around.
+	 */
+	private void nextStamp() {
+		visitStamp++;
+		if (visitStamp == 0) {
+			Arrays.fill(visited, 0);
+			visitStamp = 1;
+		}
+	}
+
+	/**
+	 * Removes the chain the stone on intersection i belongs to from the board.
+	 * Every stone that is taken off gives a pseudo-liberty back to each of its
+	 * neighbouring chains.
+	 */
+	private void removeChain(int i) {
+		int root = find(i);
+		int s = root;
+		do {
+			if (!listeners.isEmpty()) {
+				listeners.stoneRemoved(getCol(s), getRow(s));
+			}
+			hash ^= keys[2 * s + colour[s] - 1];
+			count[colour[s]]--;
+			addEmpty(s);
+			colour[s] = EMPTY;
+			s = nextStone[s];
+		} while (s != root);
+		do {
+			for (int n = neighbourStart[s]; n < neighbourStart[s + 1]; n++) {
+				int nb = neighbours[n];
+				if (colour[nb] != EMPTY) {
+					pseudoLiberties[find(nb)]++;
+				}
+			}
+			s = nextStone[s];
+		} while (s != root);
+	}
+
+	/**
+	 * Adds intersection i, which has just become empty, to the end of the empty
+	 * list.
+	 */
+	private void addEmpty(int i) {
+		emptyIndex[i] = count[EMPTY];
+		emptyList[count[EMPTY]++] = i;
+	}
+
+	/**
+	 * Takes intersection i, which has just been filled, out of the empty list by
+	 * moving the last empty intersection into its place.
+	 */
+	private void removeEmpty(int i) {
+		int last = emptyList[--count[EMPTY]];
+		int k = emptyIndex[i];
+		emptyList[k] = last;
+		emptyIndex[last] = k;
+	}
+
+	/**
+	 * Joins the chains with roots a and b (union by size: the root of the smaller
+	 * chain gets the root of the bigger one as parent) and splices their rings of
+	 * stones together. Does nothing if a and b are the same chain.
+	 */
+	private void joinChains(int a, int b) {
+		if (a == b) {
+			return;
+		}
+		if (chainSize[a] < chainSize[b]) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+		parent[b] = a;
+		chainSize[a] += chainSize[b];
+		pseudoLiberties[a] += pseudoLiberties[b];
+		int next = nextStone[a];
+		nextStone[a] = nextStone[b];
+		nextStone[b] = next;
+	}
+
+	/**
+	 * Counts the liberties of the chain with the provided root, not counting any
+	 * liberty twice.
+	 */
+	private int countLiberties(int root) {
+		nextStamp();
+		int libs = 0;
+		int s = root;
+		do {
+			for (int n = neighbourStart[s]; n < neighbourStart[s + 1]; n++) {
+				int nb = neighbours[n];
+				if (colour[nb] == EMPTY && visited[nb] != visitStamp) {
+					visited[nb] = visitStamp;
+					libs++;
+				}
+			}
+			s = nextStone[s];
+		} while (s != root);
+		return libs;
+	}
+
+	/**
+	 * Rebuilds the chain containing the stone on intersection i from scratch by
+	 * walking over all connected stones of the same colour, making i its root.
+	 * Used after a single stone has been taken off the board, which may split a
+	 * chain in two.
+	 */
+	private void rebuildChain(int i) {
+		byte c = colour[i];
+		nextStamp();
+		int top = 0;
+		stack[top++] = i;
+		visited[i] = visitStamp;
+		int last = i;
+		int size = 0;
+		int libs = 0;
+		while (top > 0) {
+			int s = stack[--top];
+			parent[s] = i;
+			nextStone[last] = s;
+			last = s;
+			size++;
+			for (int n = neighbourStart[s]; n < neighbourStart[s + 1]; n++) {
+				int nb = neighbours[n];
+				if (colour[nb] == EMPTY) {
+					libs++;
+				} else if (colour[nb] == c && visited[nb] != visitStamp) {
+					visited[nb] = visitStamp;
+					stack[top++] = nb;
+				}
+			}
+		}
+		nextStone[last] = i;
+		chainSize[i] = size;
+		pseudoLiberties[i] = libs;
+	}
+
+	/**
+	 * Counts the score with the area scorer of this board (created on first use,
+	 * then reused). White starts with a Komi of 0.5.
+	 */
+	@Override
+	public void countScore() {
+		if (scorer == null) {
+			scorer = new AreaScorer(boardSize);
+		}
+		scorer.count(colour);
+		blackScore = scorer.getBlack();
+		whiteScore = scorer.getWhite() + KOMI;
+	}
+
+	@Override
+	public double getBlackScore() {
+		return blackScore;
+	}
+
+	@Override
+	public double getWhiteScore() {
+		return whiteScore;
+	}
+
+	@Override
+	public boolean determineWinner() {
+		countScore();
+		System.out.println(
+				"The score has been counted! White's score is " + whiteScore + ", black's score is " + blackScore);
+		return (whiteScore > blackScore);
+	}
+
+	@Override
+	public int getCount(Mark mark) {
+		return count[mark.ordinal()];
+	}
+
+	@Override
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	@Override
+	public void setMoveLimit(int moveLimit) {
+		this.moveLimit = moveLimit;
+	}
+
+	@Override
+	public boolean gameOver() {
+		return count[EMPTY] == 0 || moveCount >= moveLimit;
+	}
+
+	/**
+	 * Stores the hash of the current board situation to check whether no previous
+	 * board situation is recreated (Ko-rule). This method should not be called when
+	 * a player passes!!!
+	 *
+	 * @throws ExitProgram when the Ko-rule has been violated
+	 */
+	public void addBoardSituation() throws ExitProgram {
+		if (!history.add(hash, this)) {
+			throw new ExitProgram("The Ko rule has been violated!");
+		}
+	}
+
+	@Override
+	public void addBoardListener(BoardListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeBoardListener(BoardListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public void close() {
+		listeners.boardClosed();
+	}
+
+	/**
+	 * Turns a Board into a String, one character (U, B or W) per intersection.
+	 * Used to communicate the contents of a board situation, and by the full
+	 * position check of the Ko-rule.
+	 */
+	@Override
+	public String toString() {
+		char[] s = new char[colour.length];
+		for (int i = 0; i < colour.length; i++) {
+			s[i] = MARKS[colour[i]].name().charAt(0);
+		}
+		return new String(s);
+	}
+
+}
@@ -0,0 +1,577 @@
+package game;
+
+import exceptions.ExitProgram;
+
+/**
+ * A board for small games of Go (up to 13x13) that stores the stones of each
+ * colour as a bitboard: intersection i (row * boardSize + col) is bit i % 64 of
+ * word i / 64, so a 13x13 position takes three longs per colour. Chains,
+ * liberties, captures and empty areas are all found by shifting and masking
+ * whole words instead of walking neighbour lists.
+ */
+public class BitBoard implements GoBoard {
+
+	/**
+	 * The largest board size this implementation is meant for.
+	 */
+	public static final int MAX_SIZE = 13;
+
+	/**
+	 * The size of the board.
+	 */
+	private int boardSize;
+
+	/**
+	 * The number of words of every bitboard.
+	 */
+	private int words;
+
+	/**
+	 * The black and the white stones.
+	 */
+	private long[] black;
+	private long[] white;
+
+	/**
+	 * The number of black stones, of white stones and of empty intersections on
+	 * the board, kept up to date with every change so they never need counting.
+	 */
+	private int blackStones;
+	private int whiteStones;
+	private int emptyPoints;
+
+	/**
+	 * The number of stones put on the board with putStone, and the number of moves
+	 * after which gameOver() returns true even if the board is not full.
+	 */
+	private int moveCount;
+	private int moveLimit = Integer.MAX_VALUE;
+
+	/**
+	 * Masks of all intersections of the board, of all intersections that are not
+	 * in the first column and of all that are not in the last column. Used to
+	 * cut off the bits that a shift moves across the edge of the board.
+	 */
+	private long[] onBoard;
+	private long[] notFirstCol;
+	private long[] notLastCol;
+
+	/**
+	 * Scratch bitboards, allocated once so that no operation allocates.
+	 */
+	private long[] chain;
+	private long[] grown;
+	private long[] empty;
+	private long[] nextOwn;
+	private long[] nextOther;
+
+	/**
+	 * The Zobrist keys for this board size and the Zobrist hash of the current
+	 * board situation.
+	 */
+	private long[] keys;
+	private long hash;
+
+	/**
+	 * Keeps track of all previous board situations (used for Ko-rule).
+	 */
+	private PositionHistory history;
+
+	/**
+	 * The listeners told about every stone that is added or removed (such as the
+	 * GUI).
+	 */
+	private BoardListeners listeners;
+
+	/**
+	 * The final score of the player whose Mark is B.
+	 */
+	private double blackScore;
+
+	/**
+	 * The final score of the player whose Mark is W, including the Komi.
+	 */
+	private double whiteScore;
+
+	/**
+	 * Creates an empty board and the masks for its size. If gui is set to true, a
+	 * GUI is started and subscribed to the board; otherwise the board is headless.
+	 */
+	public BitBoard(int boardSize, boolean gui) {
+		if (boardSize > MAX_SIZE) {
+			throw new IllegalArgumentException("A BitBoard can be at most " + MAX_SIZE + " x " + MAX_SIZE + "!");
+		}
+		this.boardSize = boardSize;
+		int points = boardSize * boardSize;
+		words = (points + 63) / 64;
+		black = new long[words];
+		white = new long[words];
+		onBoard = new long[words];
+		notFirstCol = new long[words];
+		notLastCol = new long[words];
+		chain = new long[words];
+		grown = new long[words];
+		empty = new long[words];
+		nextOwn = new long[words];
+		nextOther = new long[words];
+		emptyPoints = points;
+		for (int i = 0; i < points; i++) {
+			set(onBoard, i);
+			if (getCol(i) != 0) {
+				set(notFirstCol, i);
+			}
+			if (getCol(i) != boardSize - 1) {
+				set(notLastCol, i);
+			}
+		}
+		listeners = new BoardListeners();
+		if (gui) {
+			listeners.add(new GuiBoardListener(boardSize));
+		}
+		keys = Zobrist.keys(points);
+		history = new PositionHistory();
+	}
+
+	@Override
+	public int getBoardSize() {
+		return boardSize;
+	}
+
+	@Override
+	public int coorToInt(int col, int row) {
+		return row * this.boardSize + col;
+	}
+
+	@Override
+	public int getCol(int i) {
+		return i % this.boardSize;
+	}
+
+	@Override
+	public int getRow(int i) {
+		return i / this.boardSize;
+	}
+
+	@Override
+	public Mark getMark(int i) {
+		if (get(black, i)) {
+			return Mark.B;
+		} else if (get(white, i)) {
+			return Mark.W;
+		}
+		return Mark.U;
+	}
+
+	@Override
+	public boolean isUnoccupied(int i) throws ExitProgram {
+		if (i < 0 || i >= boardSize * boardSize) {
+			throw new ExitProgram("You have provided an intersection that is not on the board!");
+		}
+		return !get(black, i) && !get(white, i);
+	}
+
+	/**
+	 * Returns the number of liberties of the chain the stone on intersection i
+	 * belongs to. Should only be called for occupied intersections.
+	 */
+	public int getLiberties(int i) {
+		long[] own = get(black, i) ? black : white;
+		floodChain(own, i);
+		dilate(chain, grown);
+		int libs = 0;
+		for (int w = 0; w < words; w++) {
+			libs += Long.bitCount(grown[w] & ~black[w] & ~white[w]);
+		}
+		return libs;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the current board situation.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Turns on (or off) the comparison of full board situations when the hash of
+	 * a new situation has been seen before. Should be called before the first
+	 * stone is placed.
+	 */
+	public void setFullPositionCheck(boolean fullCheck) {
+		history.setFullCheck(fullCheck);
+	}
+
+	@Override
+	public boolean isLegal(int move, Mark mark) {
+		if (move == -1) {
+			return true;
+		}
+		if (move < 0 || move >= boardSize * boardSize || get(black, move) || get(white, move)) {
+			return false;
+		}
+		long h = resultOf(move, mark);
+		return !history.wouldRepeat(h, () -> mark == Mark.B ? situationOf(nextOwn, nextOther)
+				: situationOf(nextOther, nextOwn));
+	}
+
+	/**
+	 * Returns the board situation with the provided black and white stones, in
+	 * the form of toString. Only needed for the full check of the Ko-rule.
+	 */
+	private String situationOf(long[] blackStones, long[] whiteStones) {
+		char[] s = new char[boardSize * boardSize];
+		for (int i = 0; i < s.length; i++) {
+			s[i] = get(blackStones, i) ? 'B' : get(whiteStones, i) ? 'W' : 'U';
+		}
+		return new String(s);
+	}
+
+	@Override
+	public void addStone(int col, int row, Mark mark) {
+		int i = coorToInt(col, row);
+		listeners.stoneAdded(col, row, mark);
+		set(mark == Mark.B ? black : white, i);
+		hash ^= Zobrist.key(keys, i, mark);
+		updateCounts();
+	}
+
+	@Override
+	public void removeStone(int col, int row) {
+		int i = coorToInt(col, row);
+		Mark mark = getMark(i);
+		if (mark == Mark.U) {
+			return;
+		}
+		listeners.stoneRemoved(col, row);
+		clear(mark == Mark.B ? black : white, i);
+		hash ^= Zobrist.key(keys, i, mark);
+		updateCounts();
+	}
+
+	/**
+	 * Put a stone on the board at the provided column and row. The board situation
+	 * after the move (captures of the opponent first, then the chain of the stone
+	 * itself if it has no liberties) is worked out on scratch bitboards and then
+	 * copied in, after which the situation is added to the Ko history.
+	 *
+	 * @throws ExitProgram if the intersection is occupied or the Ko-rule has been
+	 *                     violated
+	 */
+	@Override
+	public void putStone(int col, int row, Mark mark) throws ExitProgram {
+		int i = coorToInt(col, row);
+		if (!isUnoccupied(i)) {
+			throw new ExitProgram("Cannot place a stone at an intersection where there already is one!");
+		}
+		hash = resultOf(i, mark);
+		long[] own = mark == Mark.B ? black : white;
+		long[] other = mark == Mark.B ? white : black;
+		if (!listeners.isEmpty()) {
+			tellListeners(own, nextOwn, mark);
+			tellListeners(other, nextOther, mark.other());
+		}
+		System.arraycopy(nextOwn, 0, own, 0, words);
+		System.arraycopy(nextOther, 0, other, 0, words);
+		updateCounts();
+		moveCount++;
+		if (!history.add(hash, this)) {
+			throw new ExitProgram("The Ko rule has been violated!");
+		}
+	}
+
+	/**
+	 * Recounts the stones of both colours with a population count per word, which
+	 * for a board of at most 13x13 is only three words per colour.
+	 */
+	private void updateCounts() {
+		blackStones = 0;
+		whiteStones = 0;
+		for (int w = 0; w < words; w++) {
+			blackStones += Long.bitCount(black[w]);
+			whiteStones += Long.bitCount(white[w]);
+		}
+		emptyPoints = boardSize * boardSize - blackStones - whiteStones;
+	}
+
+	/**
+	 * Works out the board situation after mark plays on intersection move into
+	 * nextOwn and nextOther, and returns its hash. The board itself is not
+	 * changed.
+	 */
+	private long resultOf(int move, Mark mark) {
+		long[] own = mark == Mark.B ? black : white;
+		long[] other = mark == Mark.B ? white : black;
+		long h = hash ^ Zobrist.key(keys, move, mark);
+		System.arraycopy(own, 0, nextOwn, 0, words);
+		System.arraycopy(other, 0, nextOther, 0, words);
+		set(nextOwn, move);
+		boolean captures = false;
+		for (int d = 0; d < 4; d++) {
+			int nb = neighbour(move, d);
+			if (nb != -1 && get(nextOther, nb)) {
+				floodChain(nextOther, nb);
+				if (!hasLiberty(chain)) {
+					captures = true;
+					h ^= removeChain(nextOther, mark.other());
+				}
+			}
+		}
+		if (!captures) {
+			floodChain(nextOwn, move);
+			if (!hasLiberty(chain)) {
+				h ^= removeChain(nextOwn, mark);
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Removes the stones of the chain scratch bitboard from the provided stones,
+	 * and returns the XOR of their Zobrist keys.
+	 */
+	private long removeChain(long[] stones, Mark mark) {
+		long h = 0;
+		for (int w = 0; w < words; w++) {
+			stones[w] &= ~chain[w];
+			long bits = chain[w];
+			while (bits != 0) {
+				int i = 64 * w + Long.numberOfTrailingZeros(bits);
+				h ^= Zobrist.key(keys, i, mark);
+				bits &= bits - 1;
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Returns true if the chain scratch bitboard borders an empty intersection of
+	 * the situation in nextOwn and nextOther.
+	 */
+	private boolean hasLiberty(long[] stones) {
+		dilate(stones, grown);
+		for (int w = 0; w < words; w++) {
+			if ((grown[w] & ~nextOwn[w] & ~nextOther[w]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fills the chain scratch bitboard with the chain of the provided stones that
+	 * contains intersection i, by growing it one step at a time until it stops
+	 * changing.
+	 */
+	private void floodChain(long[] stones, int i) {
+		for (int w = 0; w < words; w++) {
+			chain[w] = 0;
+		}
+		set(chain, i);
+		flood(stones);
+	}
+
+	/**
+	 * Grows the chain scratch bitboard within the provided mask until it stops
+	 * changing.
+	 */
+	private void flood(long[] mask) {
+		boolean changed = true;
+		while (changed) {
+			dilate(chain, grown);
+			changed = false;
+			for (int w = 0; w < words; w++) {
+				long next = grown[w] & mask[w];
+				if (next != chain[w]) {
+					chain[w] = next;
+					changed = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the provided bitboard together with all its neighbours into dst: every
+	 * word is shifted one column and one row both ways, carrying bits over from
+	 * the neighbouring words, and the bits that crossed an edge are masked off.
+	 */
+	private void dilate(long[] src, long[] dst) {
+		int n = boardSize;
+		for (int w = 0; w < words; w++) {
+			long x = src[w];
+			long lower = w > 0 ? src[w - 1] : 0;
+			long higher = w < words - 1 ? src[w + 1] : 0;
+			long east = (x << 1) | (lower >>> 63);
+			long west = (x >>> 1) | (higher << 63);
+			long south = (x << n) | (lower >>> (64 - n));
+			long north = (x >>> n) | (higher << (64 - n));
+			dst[w] = (x | (east & notFirstCol[w]) | (west & notLastCol[w]) | south | north) & onBoard[w];
+		}
+	}
+
+	/**
+	 * Tells the listeners the difference between the stones of one colour now and
+	 * after a move.
+	 */
+	private void tellListeners(long[] before, long[] after, Mark mark) {
+		for (int w = 0; w < words; w++) {
+			long added = after[w] & ~before[w];
+			long removed = before[w] & ~after[w];
+			while (added != 0) {
+				int i = 64 * w + Long.numberOfTrailingZeros(added);
+				listeners.stoneAdded(getCol(i), getRow(i), mark);
+				added &= added - 1;
+			}
+			while (removed != 0) {
+				int i = 64 * w + Long.numberOfTrailingZeros(removed);
+				listeners.stoneRemoved(getCol(i), getRow(i));
+				removed &= removed - 1;
+			}
+		}
+	}
+
+	/**
+	 * Counts the score: every stone is a point for its colour, every empty area is
+	 * grown from its lowest intersection and counts for the colour that is the
+	 * only one bordering it. White starts with the Komi.
+	 */
+	@Override
+	public void countScore() {
+		int blackPoints = 0;
+		int whitePoints = 0;
+		for (int w = 0; w < words; w++) {
+			blackPoints += Long.bitCount(black[w]);
+			whitePoints += Long.bitCount(white[w]);
+			empty[w] = onBoard[w] & ~black[w] & ~white[w];
+		}
+		for (int w = 0; w < words; w++) {
+			while (empty[w] != 0) {
+				int i = 64 * w + Long.numberOfTrailingZeros(empty[w]);
+				floodChain(empty, i);
+				dilate(chain, grown);
+				boolean touchesBlack = false;
+				boolean touchesWhite = false;
+				int size = 0;
+				for (int v = 0; v < words; v++) {
+					touchesBlack = touchesBlack || (grown[v] & black[v]) != 0;
+					touchesWhite = touchesWhite || (grown[v] & white[v]) != 0;
+					size += Long.bitCount(chain[v]);
+					empty[v] &= ~chain[v];
+				}
+				if (touchesBlack && !touchesWhite) {
+					blackPoints += size;
+				} else if (touchesWhite && !touchesBlack) {
+					whitePoints += size;
+				}
+			}
+		}
+		blackScore = blackPoints;
+		whiteScore = whitePoints + KOMI;
+	}
+
+	@Override
+	public double getBlackScore() {
+		return blackScore;
+	}
+
+	@Override
+	public double getWhiteScore() {
+		return whiteScore;
+	}
+
+	@Override
+	public boolean determineWinner() {
+		countScore();
+		System.out.println(
+				"The score has been counted! White's score is " + whiteScore + ", black's score is " + blackScore);
+		return (whiteScore > blackScore);
+	}
+
+	@Override
+	public int getCount(Mark mark) {
+		if (mark == Mark.B) {
+			return blackStones;
+		}
+		return mark == Mark.W ? whiteStones : emptyPoints;
+	}
+
+	@Override
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	@Override
+	public void setMoveLimit(int moveLimit) {
+		this.moveLimit = moveLimit;
+	}
+
+	@Override
+	public boolean gameOver() {
+		return emptyPoints == 0 || moveCount >= moveLimit;
+	}
+
+	@Override
+	public void addBoardListener(BoardListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeBoardListener(BoardListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public void close() {
+		listeners.boardClosed();
+	}
+
+	/**
+	 * Returns neighbour d (0 to 3: left, right, up, down) of intersection i, or -1
+	 * if i lies at that edge of the board.
+	 */
+	private int neighbour(int i, int d) {
+		switch (d) {
+		case 0:
+			return getCol(i) != 0 ? i - 1 : -1;
+		case 1:
+			return getCol(i) != boardSize - 1 ? i + 1 : -1;
+		case 2:
+			return i >= boardSize ? i - boardSize : -1;
+		default:
+			return i < boardSize * (boardSize - 1) ? i + boardSize : -1;
+		}
+	}
+
+	/**
+	 * Returns true if bit i of the bitboard is set.
+	 */
+	private static boolean get(long[] bits, int i) {
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Sets bit i of the bitboard.
+	 */
+	private static void set(long[] bits, int i) {
+		bits[i >>> 6] |= 1L << i;
+	}
+
+	/**
+	 * Clears bit i of the bitboard.
+	 */
+	private static void clear(long[] bits, int i) {
+		bits[i >>> 6] &= ~(1L << i);
+	}
+
+	/**
+	 * Turns a Board into a String, one character (U, B or W) per intersection.
+	 */
+	@Override
+	public String toString() {
+		char[] s = new char[boardSize * boardSize];
+		for (int i = 0; i < s.length; i++) {
+			s[i] = getMark(i).name().charAt(0);
+		}
+		return new String(s);
+	}
+
+}
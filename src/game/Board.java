@@ -3,14 +3,12 @@ package game;
 import java.util.HashSet;
 import java.util.Set;
 
-import com.nedap.go.gui.GoGUIIntegrator;
-
 import exceptions.ExitProgram;
 
 /**
  * The board on which a game of Go is played.
  */
-public class Board {
+public class Board implements GoBoard {
 
 	/**
 	 * The size of the board.
@@ -24,14 +22,24 @@ public class Board {
 	public Intersec[] intersecs;
 
 	/**
-	 * The GUI of this board.
+	 * The listeners told about every stone that is added or removed, including the
+	 * GUI if there is one.
+	 */
+	private BoardListeners listeners;
+
+	/**
+	 * The number of intersections with every mark, indexed by the ordinal of the
+	 * mark (so count[0] is the number of empty intersections). Updated in addStone
+	 * and removeStone, so the board never has to be scanned to see if it is full.
 	 */
-	private GoGUIIntegrator g;
+	private int[] count;
 
 	/**
-	 * Indicates whether a first stone has been placed on the board.
+	 * The number of stones put on the board with putStone, and the number of moves
+	 * after which gameOver() returns true even if the board is not full.
 	 */
-	private boolean firstStone;
+	private int moveCount;
+	private int moveLimit = Integer.MAX_VALUE;
 
 	/**
 	 * The final score of the player whose Mark is B, i.e. the first player. This is
@@ -46,21 +54,28 @@ public class Board {
 	 */
 	double whiteScore;
 
+	/**
+	 * The Zobrist keys for this board size and the Zobrist hash of the current
+	 * board situation, updated in addStone and removeStone.
+	 */
+	private long[] keys;
+	private long hash;
+
 	/**
 	 * Keeps track of all previous board situations (used for Ko-rule).
 	 */
-	private Set<String> boardSituations;
+	private PositionHistory history;
 
 	/**
 	 * Creates an empty board, gives each intersection its initial number of
 	 * liberties and its list of neighbours, starts the GUI. If gui is set to false,
-	 * the GUI will not be started (useful for testing). Finally initialises the
-	 * board situations as an empty set.
+	 * no GUI is created at all (useful for testing and on the server). Finally initialises the
+	 * Zobrist keys and the (empty) history of board situations.
 	 */
 	public Board(int boardSize, boolean gui) {
-		this.firstStone = false;
 		this.boardSize = boardSize;
 		intersecs = new Intersec[boardSize * boardSize];
+		count = new int[] { intersecs.length, 0, 0 };
 		int i = 0;
 		for (int row = 0; row < boardSize; row++) {
 			for (int col = 0; col < boardSize; col++) {
@@ -90,11 +105,12 @@ public class Board {
 				i++;
 			}
 		}
-		g = new GoGUIIntegrator(false, false, this.boardSize);
+		listeners = new BoardListeners();
 		if (gui) {
-			g.startGUI();
+			listeners.add(new GuiBoardListener(boardSize));
 		}
-		this.boardSituations = new HashSet<>();
+		keys = Zobrist.keys(boardSize * boardSize);
+		this.history = new PositionHistory();
 	}
 
 	/**
@@ -127,6 +143,13 @@ public class Board {
 		return i / this.boardSize;
 	}
 
+	/**
+	 * Returns the mark of intersection i (U if there is no stone on there).
+	 */
+	public Mark getMark(int i) {
+		return intersecs[i].getMark();
+	}
+
 	/**
 	 * Returns true if the intersection i is empty.
 	 * 
@@ -143,6 +166,82 @@ public class Board {
 		}
 	}
 
+	/**
+	 * Works out the hash of the board situation after the move from the chains
+	 * next to it: a neighbouring chain is removed when the move takes its only
+	 * liberty. Does not change the board.
+	 */
+	public boolean isLegal(int move, Mark mark) {
+		if (move == -1) {
+			return true;
+		}
+		if (move < 0 || move >= intersecs.length || intersecs[move].getMark() != Mark.U) {
+			return false;
+		}
+		Intersec intersec = intersecs[move];
+		long h = hash ^ Zobrist.key(keys, move, mark);
+		Set<Chain> captured = new HashSet<>();
+		Set<Chain> own = new HashSet<>();
+		boolean suicide = true;
+		for (Intersec neighbour : intersec.getNeighbours()) {
+			if (neighbour.getMark() == Mark.U) {
+				suicide = false;
+			} else {
+				Set<Intersec> liberties = neighbour.getChain().getLiberties();
+				boolean lastLiberty = liberties.size() == 1 && liberties.contains(intersec);
+				if (neighbour.getMark() == mark.other() && lastLiberty) {
+					captured.add(neighbour.getChain());
+				} else if (neighbour.getMark() == mark) {
+					own.add(neighbour.getChain());
+					if (!lastLiberty) {
+						suicide = false;
+					}
+				}
+			}
+		}
+		for (Chain chain : captured) {
+			h ^= chainHash(chain);
+		}
+		boolean suicided = suicide && captured.isEmpty();
+		if (suicided) {
+			h ^= Zobrist.key(keys, move, mark);
+			for (Chain chain : own) {
+				h ^= chainHash(chain);
+			}
+		}
+		Mark stone = suicided ? Mark.U : mark;
+		Set<Chain> removed = suicided ? own : captured;
+		return !history.wouldRepeat(h, () -> situationAfter(move, stone, removed));
+	}
+
+	/**
+	 * Returns the board situation (as returned by toString) with the provided
+	 * mark on the empty intersection move (U if the move is suicide) and the
+	 * provided chains removed. Only needed for the full check of the Ko-rule.
+	 */
+	private String situationAfter(int move, Mark stone, Set<Chain> removed) {
+		char[] s = toString().toCharArray();
+		s[move] = stone.name().charAt(0);
+		for (Chain chain : removed) {
+			for (Intersec i : chain.getStones()) {
+				s[coorToInt(i.getCol(), i.getRow())] = 'U';
+			}
+		}
+		return new String(s);
+	}
+
+	/**
+	 * Returns the XOR of the Zobrist keys of all stones of the chain, which is
+	 * what the hash changes by when the chain is removed.
+	 */
+	private long chainHash(Chain chain) {
+		long h = 0;
+		for (Intersec stone : chain.getStones()) {
+			h ^= Zobrist.key(keys, coorToInt(stone.getCol(), stone.getRow()), stone.getMark());
+		}
+		return h;
+	}
+
 	/**
 	 * Adds a stone to the GUI. Updates the intersection on which the stone is
 	 * placed by changing the mark to the stone's colour. Then updates liberties of
@@ -150,8 +249,11 @@ public class Board {
 	 */
 	public void addStone(int col, int row, Mark mark) {
 		int i = coorToInt(col, row);
-		g.addStone(col, row, mark.bool());
+		listeners.stoneAdded(col, row, mark);
+		count[intersecs[i].getMark().ordinal()]--;
+		count[mark.ordinal()]++;
 		intersecs[i].setMark(mark);
+		hash ^= Zobrist.key(keys, i, mark);
 		for (Intersec neighbour : intersecs[i].getNeighbours()) {
 			if (neighbour.getMark() != Mark.U) {
 				intersecs[i].removeLiberty(neighbour);
@@ -169,7 +271,12 @@ public class Board {
 	 */
 	public void removeStone(int col, int row) {
 		int i = coorToInt(col, row);
-		g.removeStone(col, row);
+		listeners.stoneRemoved(col, row);
+		if (intersecs[i].getMark() != Mark.U) {
+			hash ^= Zobrist.key(keys, i, intersecs[i].getMark());
+			count[intersecs[i].getMark().ordinal()]--;
+			count[Mark.U.ordinal()]++;
+		}
 		intersecs[i].setMark(Mark.U);
 		for (Intersec neighbour : intersecs[i].getNeighbours()) {
 			neighbour.addLiberty(intersecs[i]);
@@ -197,11 +304,11 @@ public class Board {
 	 *                     next stone that already has a stone on there
 	 */
 	public void putStone(int col, int row, Mark mark) throws ExitProgram {
-		this.firstStone = false;
 		int i = coorToInt(col, row);
 		if (!isUnoccupied(i)) {
 			throw new ExitProgram("Cannot place a stone at an intersection where there already is one!");
 		}
+		moveCount++;
 		addStone(col, row, mark);
 		Chain chain = new Chain(intersecs[i], mark);
 		for (Intersec neighbour : intersecs[i].getNeighbours()) {
@@ -210,167 +317,152 @@ public class Board {
 			}
 		}
 		for (Intersec neighbour : intersecs[i].getNeighbours()) {
-			if (neighbour.getMark() == mark.other() && neighbour.getChain().chainLib() == 0) {
+			if (neighbour.getMark() == mark.other() && !neighbour.getChain().hasLiberties()) {
 				removeChain(neighbour.getChain());
 			}
 		}
-		if (intersecs[i].getChain().chainLib() == 0) {
+		if (!intersecs[i].getChain().hasLiberties()) {
 			removeChain(intersecs[i].getChain());
 		}
-		addBoardSituation(this.toString());
+		addBoardSituation();
 	}
 
 	/**
 	 * After the game has ended (either board full or two consecutive passes in a
-	 * row), the score will be counted by calling this method. For all intersections
-	 * it determines whether there is a black or white stone, and if so the
-	 * corresponding score is incremented. It also determines to which colour empty
-	 * areas belong. Finally it updates the scores of both players by adding up all
-	 * empty intersections that belong to only their are.
+	 * row), the score will be counted by calling this method. Every stone is a
+	 * point for its colour, and an empty area is worth its size for the colour
+	 * that is the only one bordering it (see AreaScorer, which fills empty areas
+	 * without recursion). White gets an initial value (Komi) of 0.5.
 	 */
 	public void countScore() {
-		blackScore = 0;
-		whiteScore = 0.5;
-		scoringBlack();
-		for (int i = 0; i < intersecs.length; i++) {
-			intersecs[i].setChecked(false);
-		}
-		scoringWhite();
+		byte[] colour = new byte[intersecs.length];
 		for (int i = 0; i < intersecs.length; i++) {
-			if (intersecs[i].getAreaColor() == Mark.B) {
-				blackScore = blackScore + 1;
-			} else if (intersecs[i].getAreaColor() == Mark.W) {
-				whiteScore = whiteScore + 1;
-			}
+			colour[i] = (byte) intersecs[i].getMark().ordinal();
 		}
+		AreaScorer scorer = new AreaScorer(boardSize);
+		scorer.count(colour);
+		blackScore = scorer.getBlack();
+		whiteScore = scorer.getWhite() + KOMI;
 	}
 
 	/**
-	 * Gives a point to black for each black stone on the board. Calls the
-	 * areaBlack(Intersec intersec) method on each intersection with a black stone
-	 * on there.
+	 * Getter method for the score of black, as counted by countScore().
 	 */
-	private void scoringBlack() {
-		for (int i = 0; i < intersecs.length; i++) {
-			if (intersecs[i].getMark() == Mark.B) {
-				blackScore = blackScore + 1;
-				for (Intersec neighbour : intersecs[i].getNeighbours()) {
-					areaBlack(neighbour);
-				}
-			}
-		}
+	public double getBlackScore() {
+		return blackScore;
 	}
 
 	/**
-	 * Determines for all intersections in an empty area whether they belong to the
-	 * area of black (if so, their blackArea boolean is set to true). This is the
-	 * case when at least one black stone borders this empty area.
+	 * Getter method for the score of white, as counted by countScore().
 	 */
-	private void areaBlack(Intersec intersec) {
-		if (intersec.getMark() == Mark.U && !intersec.isChecked()) {
-			intersec.setBlackArea(true);
-			intersec.setChecked(true);
-			for (Intersec neighbour : intersec.getNeighbours()) {
-				areaBlack(neighbour);
-			}
-		}
+	public double getWhiteScore() {
+		return whiteScore;
+	}
+
+	/**
+	 * Determine the winner of the game. Return true if white wins, false if black
+	 * wins.
+	 */
+	public boolean determineWinner() {
+		countScore();
+		System.out.println(
+				"The score has been counted! White's score is " + whiteScore + ", black's score is " + blackScore);
+		return (whiteScore > blackScore);
 	}
 
 	/**
-	 * Gives a point to black for each black stone on the board. Calls the
-	 * areaBlack(Intersec intersec) method on each intersection with a black stone
-	 * on there.
+	 * Returns the number of intersections with the provided mark (U for the empty
+	 * ones).
 	 */
-	private void scoringWhite() {
-		for (int i = 0; i < intersecs.length; i++) {
-			if (intersecs[i].getMark() == Mark.W) {
-				whiteScore = whiteScore + 1;
-				for (Intersec neighbour : intersecs[i].getNeighbours()) {
-					areaWhite(neighbour);
-				}
-			}
-		}
+	public int getCount(Mark mark) {
+		return count[mark.ordinal()];
 	}
 
 	/**
-	 * Determines for all intersections in an empty area whether they belong to the
-	 * area of black (if so, their blackArea boolean is set to true). This is the
-	 * case when at least one black stone borders this empty area.
+	 * Returns the number of stones put on the board with putStone so far.
 	 */
-	private void areaWhite(Intersec intersec) {
-		if (intersec.getMark() == Mark.U && !intersec.isChecked()) {
-			intersec.setWhiteArea(true);
-			intersec.setChecked(true);
-			for (Intersec neighbour : intersec.getNeighbours()) {
-				areaWhite(neighbour);
-			}
-		}
+	public int getMoveCount() {
+		return moveCount;
 	}
 
 	/**
-	 * Determine the winner of the game. Return true if white wins, false if black
-	 * wins.
+	 * Sets the number of moves after which gameOver() returns true, even if the
+	 * board is not full yet.
 	 */
-	public boolean determineWinner() {
-		countScore();
-		System.out.println(
-				"The score has been counted! White's score is " + whiteScore + ", black's score is " + blackScore);
-		return (whiteScore > blackScore);
+	public void setMoveLimit(int moveLimit) {
+		this.moveLimit = moveLimit;
 	}
 
 	/**
-	 * Checks whether the board is full (and hence the game is over).
+	 * Checks whether the board is full or the move limit has been reached (and
+	 * hence the game is over).
 	 */
 	public boolean gameOver() {
-		int i = 0;
-		if (!firstStone) {
-			return false;
-		}
-		for (int row = 0; row < boardSize; row++) {
-			for (int col = 0; col < boardSize; col++) {
-				if (intersecs[i].getMark() != Mark.U) {
-					return false;
-				}
-				i++;
-			}
-		}
-		return true;
+		return count[Mark.U.ordinal()] == 0 || moveCount >= moveLimit;
 	}
 
 	/**
-	 * Stores all the board situations to check whether no previous board situation
-	 * is recreated (Ko-rule). This method should not be called when a player
-	 * passes!!!
+	 * Stores the hash of the current board situation to check whether no previous
+	 * board situation is recreated (Ko-rule). This method should not be called when
+	 * a player passes!!!
 	 * 
 	 * @throws ExitProgram when the Ko-rule has been violated
 	 */
-	public void addBoardSituation(String boardSituation) throws ExitProgram {
-		if (boardSituations.contains(boardSituation)) {
+	public void addBoardSituation() throws ExitProgram {
+		if (!history.add(hash, this)) {
 			throw new ExitProgram("The Ko rule has been violated!");
-		} else {
-			this.boardSituations.add(boardSituation);
 		}
 	}
 
 	/**
-	 * Getter method for the GUI. Useful for quitting a game.
+	 * Returns the Zobrist hash of the current board situation.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Turns on (or off) the comparison of full board situations when the hash of
+	 * a new situation has been seen before, which rules out hash collisions in the
+	 * Ko-rule. Should be called before the first stone is placed.
+	 */
+	public void setFullPositionCheck(boolean fullCheck) {
+		history.setFullCheck(fullCheck);
+	}
+
+	/**
+	 * Subscribes a listener to every change of the stones on this board.
+	 */
+	public void addBoardListener(BoardListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unsubscribes a listener from this board.
+	 */
+	public void removeBoardListener(BoardListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Tells the listeners that this board will not be used anymore.
 	 */
-	public GoGUIIntegrator getGUI() {
-		return g;
+	public void close() {
+		listeners.boardClosed();
 	}
 
 	/**
 	 * Turns a Board into a String. Useful for debugging. Should be used to
-	 * communicate the contents of a board situation. Also used for determining
-	 * whether the Ko-rule is breached.
+	 * communicate the contents of a board situation. Also used by the full
+	 * position check of the Ko-rule.
 	 */
 	@Override
 	public String toString() {
-		String s = "";
+		StringBuilder s = new StringBuilder(intersecs.length);
 		for (int i = 0; i < intersecs.length; i++) {
-			s = s + intersecs[i];
+			s.append(intersecs[i]);
 		}
-		return s;
+		return s.toString();
 	}
 
 }
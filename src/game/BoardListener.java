@@ -0,0 +1,27 @@
+package game;
+
+/**
+ * Gets told about every change to the stones on a board. A board has no
+ * listeners unless someone subscribes, so a board that is only used for
+ * simulation or on the server does no work for a GUI at all.
+ */
+public interface BoardListener {
+
+	/**
+	 * A stone of the provided mark has been added at column col and row row.
+	 */
+	void stoneAdded(int col, int row, Mark mark);
+
+	/**
+	 * The stone at column col and row row has been removed.
+	 */
+	void stoneRemoved(int col, int row);
+
+	/**
+	 * The board will not be used anymore (for instance because the game has
+	 * ended).
+	 */
+	default void boardClosed() {
+	}
+
+}
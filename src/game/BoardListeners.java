@@ -0,0 +1,69 @@
+package game;
+
+/**
+ * The listeners subscribed to one board, which passes every change on to all of
+ * them. Kept in a plain array, so telling zero listeners costs nothing but a
+ * length check.
+ */
+public class BoardListeners implements BoardListener {
+
+	/**
+	 * The subscribed listeners.
+	 */
+	private volatile BoardListener[] listeners = new BoardListener[0];
+
+	/**
+	 * Subscribes a listener.
+	 */
+	public synchronized void add(BoardListener listener) {
+		BoardListener[] more = new BoardListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, more, 0, listeners.length);
+		more[listeners.length] = listener;
+		listeners = more;
+	}
+
+	/**
+	 * Unsubscribes a listener, if it was subscribed.
+	 */
+	public synchronized void remove(BoardListener listener) {
+		for (int k = 0; k < listeners.length; k++) {
+			if (listeners[k] == listener) {
+				BoardListener[] fewer = new BoardListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, fewer, 0, k);
+				System.arraycopy(listeners, k + 1, fewer, k, fewer.length - k);
+				listeners = fewer;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if no listener is subscribed. Lets a board skip
+	 * working out coordinates nobody will look at.
+	 */
+	public boolean isEmpty() {
+		return listeners.length == 0;
+	}
+
+	@Override
+	public void stoneAdded(int col, int row, Mark mark) {
+		for (BoardListener listener : listeners) {
+			listener.stoneAdded(col, row, mark);
+		}
+	}
+
+	@Override
+	public void stoneRemoved(int col, int row) {
+		for (BoardListener listener : listeners) {
+			listener.stoneRemoved(col, row);
+		}
+	}
+
+	@Override
+	public void boardClosed() {
+		for (BoardListener listener : listeners) {
+			listener.boardClosed();
+		}
+	}
+
+}
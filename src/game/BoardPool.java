@@ -0,0 +1,65 @@
+package game;
+
+/**
+ * A pool of scratch boards for Monte-Carlo playouts. Every playout takes a
+ * board from the pool, which is set to the root position with a bulk copy, and
+ * gives it back when it is done, so after warming up no boards are allocated
+ * anymore.
+ */
+public class BoardPool {
+
+	/**
+	 * The boards that are currently not in use.
+	 */
+	private ArrayBoard[] free;
+
+	/**
+	 * The number of boards in the free array.
+	 */
+	private int freeCount;
+
+	/**
+	 * Creates an empty pool. Boards are created on demand, when more boards are in
+	 * use at the same time than have been given back.
+	 */
+	public BoardPool() {
+		free = new ArrayBoard[4];
+	}
+
+	/**
+	 * Returns a board set to the position of the provided root board. The caller
+	 * owns the board until it is given back with release(ArrayBoard). Pooled
+	 * boards of another size than the root are dropped.
+	 */
+	public synchronized ArrayBoard acquire(ArrayBoard root) {
+		while (freeCount > 0) {
+			ArrayBoard board = free[--freeCount];
+			free[freeCount] = null;
+			if (board.getBoardSize() == root.getBoardSize()) {
+				board.copyFrom(root);
+				return board;
+			}
+		}
+		return root.clone();
+	}
+
+	/**
+	 * Gives a board obtained with acquire(ArrayBoard) back to the pool.
+	 */
+	public synchronized void release(ArrayBoard board) {
+		if (freeCount == free.length) {
+			ArrayBoard[] bigger = new ArrayBoard[2 * free.length];
+			System.arraycopy(free, 0, bigger, 0, freeCount);
+			free = bigger;
+		}
+		free[freeCount++] = board;
+	}
+
+	/**
+	 * Returns the number of boards waiting in the pool.
+	 */
+	public synchronized int size() {
+		return freeCount;
+	}
+
+}
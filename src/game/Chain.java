@@ -71,6 +71,20 @@ public class Chain {
 		return this.getLiberties().size();
 	}
 
+	/**
+	 * Returns true if at least one stone of the chain has a liberty. Stops at the
+	 * first liberty found and does not build the set of liberties, so this is the
+	 * one to use for capture checks.
+	 */
+	public boolean hasLiberties() {
+		for (Intersec stone : stones) {
+			if (!stone.getLiberties().isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Useful for debuggin
 	 */
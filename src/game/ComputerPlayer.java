@@ -18,7 +18,7 @@ public class ComputerPlayer extends Player {
 	/**
 	 * This AI always passes.
 	 */
-	public int determineMove(Board board) throws ExitProgram {
+	public int determineMove(GoBoard board) throws ExitProgram {
 		return -1;
 	}
 
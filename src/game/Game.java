@@ -20,14 +20,14 @@ public class Game {
 	/**
 	 * The Board this game is played on.
 	 */
-	private Board board;
+	private GoBoard board;
 
 	/**
 	 * Creates a new Game object, initialises players, board size and current.
 	 * Parameters all received from Server, which initialises the games.
 	 */
 	public Game(Player player1, Player player2, int boardSize, boolean gui) {
-		this.board = new Board(boardSize, gui);
+		this.board = GoBoard.newBoard(boardSize, gui);
 		players = new Player[2];
 		players[0] = player1;
 		players[1] = player2;
@@ -45,7 +45,9 @@ public class Game {
 			while (!gameOver) {
 				System.out.println();
 				System.out.println(players[current].getName() + ", it's your turn!");
-				if (players[current].makeMove(board) == -1) {
+				int move = players[current].makeMove(board);
+				players[(current + 1) % 2].opponentMoved(move);
+				if (move == -1) {
 					consecPass++;
 					System.out.println(players[current].getName() + " has passed.");
 				} else {
@@ -67,14 +69,14 @@ public class Game {
 			}
 		} catch (ExitProgram e) {
 			System.out.println("Goodbye!");
-			board.getGUI().stopGUI();
+			board.close();
 		}
 	}
 
 	/**
 	 * Getter method for the board this game is played on.
 	 */
-	public Board getBoard() {
+	public GoBoard getBoard() {
 		return this.board;
 	}
 
@@ -0,0 +1,177 @@
+package game;
+
+import exceptions.ExitProgram;
+
+/**
+ * The operations every board on which a game of Go is played should offer.
+ * Game, Server, Client and the players only talk to a board through this
+ * interface, so the implementation behind it can be swapped.
+ */
+public interface GoBoard {
+
+	/**
+	 * Name of the system property that selects the board implementation returned
+	 * by newBoard(int, boolean): "array" (default), "bit" or "intersec".
+	 */
+	String IMPLEMENTATION_PROPERTY = "go.board";
+
+	/**
+	 * The Komi: the points white gets for not having the first move.
+	 */
+	double KOMI = 0.5;
+
+	/**
+	 * Creates a new empty board of the provided size. Which implementation is
+	 * returned is decided by the go.board system property, the flat array-backed
+	 * board is used unless "intersec" is asked for, or "bit" is asked for and the
+	 * board is small enough for a BitBoard.
+	 */
+	static GoBoard newBoard(int boardSize, boolean gui) {
+		String implementation = System.getProperty(IMPLEMENTATION_PROPERTY);
+		if ("intersec".equals(implementation)) {
+			return new Board(boardSize, gui);
+		}
+		if ("bit".equals(implementation) && boardSize <= BitBoard.MAX_SIZE) {
+			return new BitBoard(boardSize, gui);
+		}
+		return new ArrayBoard(boardSize, gui);
+	}
+
+	/**
+	 * Getter method for the size of this board.
+	 */
+	int getBoardSize();
+
+	/**
+	 * Given a column and a row, gives the corresponding intersection.
+	 */
+	int coorToInt(int col, int row);
+
+	/**
+	 * Return the column of an intersection when its index is given.
+	 */
+	int getCol(int i);
+
+	/**
+	 * Return the row of an intersection when its index is given.
+	 */
+	int getRow(int i);
+
+	/**
+	 * Returns the mark of intersection i (U if there is no stone on there).
+	 */
+	Mark getMark(int i);
+
+	/**
+	 * Returns true if the intersection i is empty.
+	 *
+	 * @throws ExitProgram if the given intersection does not exist on the board.
+	 */
+	boolean isUnoccupied(int i) throws ExitProgram;
+
+	/**
+	 * Returns true if the player with the provided mark may make the provided move
+	 * (an intersection, or -1 for a pass): the intersection exists and is
+	 * unoccupied, and the board situation after the move, with captures and
+	 * suicide taken into account, has not occurred before (Ko-rule). In other
+	 * words, exactly when putStone would not throw. Does not change the board.
+	 */
+	boolean isLegal(int move, Mark mark);
+
+	/**
+	 * Adds a stone of the provided mark to the board, without checking for
+	 * captures or the Ko-rule.
+	 */
+	void addStone(int col, int row, Mark mark);
+
+	/**
+	 * Removes the stone at the provided column and row from the board.
+	 */
+	void removeStone(int col, int row);
+
+	/**
+	 * Put a stone on the board at the provided column and row, removing any chains
+	 * that have no liberties anymore.
+	 *
+	 * @throws ExitProgram if the intersection is occupied or the Ko-rule has been
+	 *                     violated
+	 */
+	void putStone(int col, int row, Mark mark) throws ExitProgram;
+
+	/**
+	 * Counts the score of both players (area scoring, 0.5 Komi for white).
+	 */
+	void countScore();
+
+	/**
+	 * Getter method for the score of black, as counted by countScore().
+	 */
+	double getBlackScore();
+
+	/**
+	 * Getter method for the score of white (Komi included), as counted by
+	 * countScore().
+	 */
+	double getWhiteScore();
+
+	/**
+	 * Determine the winner of the game. Return true if white wins, false if black
+	 * wins.
+	 */
+	boolean determineWinner();
+
+	/**
+	 * Returns the number of intersections with the provided mark: the number of
+	 * stones of a player, or the number of empty intersections for U. Kept up to
+	 * date with every stone that is added or removed, so this does not scan the
+	 * board.
+	 */
+	int getCount(Mark mark);
+
+	/**
+	 * Returns the number of moves made on this board so far (every stone put on
+	 * the board with putStone, and every move made with play on an ArrayBoard,
+	 * passes included).
+	 */
+	int getMoveCount();
+
+	/**
+	 * Sets the number of moves after which gameOver() returns true, even if the
+	 * board is not full yet. Useful to make sure simulated games end.
+	 */
+	void setMoveLimit(int moveLimit);
+
+	/**
+	 * Returns a quick estimate of the score: the number of black stones minus the
+	 * number of white stones and the Komi. Positive means black is ahead. Empty
+	 * areas are not counted, so this is only accurate when (nearly) every
+	 * intersection is occupied, such as at the end of a simulated game. Unlike
+	 * countScore() it does not look at the board at all.
+	 */
+	default double estimateScore() {
+		return getCount(Mark.B) - getCount(Mark.W) - KOMI;
+	}
+
+	/**
+	 * Checks whether the board is full or the move limit has been reached (and
+	 * hence the game is over). Does not scan the board.
+	 */
+	boolean gameOver();
+
+	/**
+	 * Subscribes a listener to every change of the stones on this board.
+	 */
+	void addBoardListener(BoardListener listener);
+
+	/**
+	 * Unsubscribes a listener from this board.
+	 */
+	void removeBoardListener(BoardListener listener);
+
+	/**
+	 * Tells the listeners of this board that it will not be used anymore (which
+	 * stops the GUI, if there is one). Useful for quitting a game.
+	 */
+	void close();
+
+}
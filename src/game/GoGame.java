@@ -39,7 +39,7 @@ public class GoGame {
 		System.out.println("Do you want the other player to be an AI player? (if yes, type y and hit Enter)");
 		Player p1;
 		if (in.nextLine().contentEquals("y")) {
-			p1 = new ComputerPlayer("AIplayer", Mark.W);
+			p1 = new MctsPlayer("AIplayer", Mark.W);
 		} else {
 			System.out.println("What is the name of the second player?");
 			name = in.nextLine();
@@ -0,0 +1,49 @@
+package game;
+
+import com.nedap.go.gui.GoGUIIntegrator;
+
+/**
+ * Shows a board on the GUI by subscribing to it. This is the only class of the
+ * game that uses the GUI library, so boards without a GUI never load it.
+ */
+public class GuiBoardListener implements BoardListener {
+
+	/**
+	 * The GUI the board is shown on.
+	 */
+	private GoGUIIntegrator g;
+
+	/**
+	 * Creates and starts a GUI for a board of the provided size.
+	 */
+	public GuiBoardListener(int boardSize) {
+		g = new GoGUIIntegrator(false, false, boardSize);
+		g.startGUI();
+	}
+
+	@Override
+	public void stoneAdded(int col, int row, Mark mark) {
+		g.addStone(col, row, mark.bool());
+	}
+
+	@Override
+	public void stoneRemoved(int col, int row) {
+		g.removeStone(col, row);
+	}
+
+	/**
+	 * Stops the GUI.
+	 */
+	@Override
+	public void boardClosed() {
+		g.stopGUI();
+	}
+
+	/**
+	 * Getter method for the GUI.
+	 */
+	public GoGUIIntegrator getGUI() {
+		return g;
+	}
+
+}
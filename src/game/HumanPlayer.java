@@ -23,10 +23,11 @@ public class HumanPlayer extends Player {
 
 	/**
 	 * Determine a move on the board: Let the player decide on where to place the
-	 * next stone and then check if the intersection is valid (exists and
-	 * unoccupied). If not, let the player decide again.
+	 * next stone and then check if the move is legal (the intersection exists, is
+	 * unoccupied and the move does not recreate a previous board situation). If
+	 * not, let the player decide again.
 	 */
-	public int determineMove(Board board) throws ExitProgram {
+	public int determineMove(GoBoard board) throws ExitProgram {
 		System.out.println("Do you want to pass? (if yes, type y)");
 		if (in.next().contentEquals("y")) {
 			return -1;
@@ -38,19 +39,16 @@ public class HumanPlayer extends Player {
 		int row = in.nextInt();
 		int intersec = row * board.getBoardSize() + col;
 
-		while (intersec < 0 || intersec > board.getBoardSize() * board.getBoardSize()
-				|| !board.isUnoccupied(intersec)) {
-			System.out.println("That is not a valid intersection. Try again!");
+		while (col < 0 || col >= board.getBoardSize() || row < 0 || row >= board.getBoardSize()
+				|| !board.isLegal(intersec, getMark())) {
+			System.out.println("That is not a valid move. Try again!");
 			System.out.println("What column do you want to place your stone in?");
 			col = in.nextInt();
 			System.out.println("What row do you want to place your stone in?");
 			row = in.nextInt();
 			intersec = row * board.getBoardSize() + col;
 		}
-
-		// TODO Check wheter the move would recreate a previous board situation (if so,
-		// let the player decide again)
-		return row * board.getBoardSize() + col;
+		return intersec;
 	}
 
 }
@@ -0,0 +1,196 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * A set of long values stored in a single long array (open addressing with
+ * linear probing), so that adding and looking up a value does not box it or
+ * allocate anything. Used to store the hashes of previous board situations.
+ */
+public class LongHashSet {
+
+	/**
+	 * The table of stored values. An entry of 0 means the slot is free, the value 0
+	 * itself is kept track of by containsZero.
+	 */
+	private long[] table;
+
+	/**
+	 * True if the value 0 has been added to this set.
+	 */
+	private boolean containsZero;
+
+	/**
+	 * The number of values in this set.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty set with room for at least the provided number of values
+	 * before it has to grow.
+	 */
+	public LongHashSet(int expected) {
+		int capacity = 16;
+		while (capacity < 2 * expected) {
+			capacity = capacity * 2;
+		}
+		table = new long[capacity];
+	}
+
+	/**
+	 * Adds the value to this set. Returns true if the value was not yet in there.
+	 */
+	public boolean add(long value) {
+		if (value == 0) {
+			boolean added = !containsZero;
+			containsZero = true;
+			if (added) {
+				size++;
+			}
+			return added;
+		}
+		int mask = table.length - 1;
+		int slot = slot(value, mask);
+		while (table[slot] != 0) {
+			if (table[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = value;
+		size++;
+		if (2 * size > table.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the value is in this set.
+	 */
+	public boolean contains(long value) {
+		if (value == 0) {
+			return containsZero;
+		}
+		int mask = table.length - 1;
+		int slot = slot(value, mask);
+		while (table[slot] != 0) {
+			if (table[slot] == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the value from this set. Returns true if the value was in there. The
+	 * values after it in the same run of occupied slots are moved back where
+	 * needed, so no deletion markers are left behind.
+	 */
+	public boolean remove(long value) {
+		if (value == 0) {
+			boolean removed = containsZero;
+			containsZero = false;
+			if (removed) {
+				size--;
+			}
+			return removed;
+		}
+		int mask = table.length - 1;
+		int slot = slot(value, mask);
+		while (table[slot] != 0) {
+			if (table[slot] == value) {
+				int hole = slot;
+				int next = (slot + 1) & mask;
+				while (table[next] != 0) {
+					int home = slot(table[next], mask);
+					// the value at next may move into the hole if its home slot does not lie
+					// (cyclically) between the hole and next
+					if (((next - home) & mask) >= ((next - hole) & mask)) {
+						table[hole] = table[next];
+						hole = next;
+					}
+					next = (next + 1) & mask;
+				}
+				table[hole] = 0;
+				size--;
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all values from this set, keeping the table.
+	 */
+	public void clear() {
+		Arrays.fill(table, 0);
+		containsZero = false;
+		size = 0;
+	}
+
+	/**
+	 * Makes this set contain exactly the values of the other set. Reuses the table
+	 * of this set when it is at least as big, so copying does not allocate: a
+	 * table of the same size is copied in bulk, into a bigger one the values are
+	 * added again. A scratch board whose history grew during a playout therefore
+	 * keeps its bigger table for the next one.
+	 */
+	public void copyFrom(LongHashSet other) {
+		if (table.length == other.table.length) {
+			System.arraycopy(other.table, 0, table, 0, table.length);
+		} else if (table.length > other.table.length) {
+			Arrays.fill(table, 0);
+			int mask = table.length - 1;
+			for (long value : other.table) {
+				if (value != 0) {
+					int slot = slot(value, mask);
+					while (table[slot] != 0) {
+						slot = (slot + 1) & mask;
+					}
+					table[slot] = value;
+				}
+			}
+		} else {
+			table = other.table.clone();
+		}
+		containsZero = other.containsZero;
+		size = other.size;
+	}
+
+	/**
+	 * Returns the number of values in this set.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Doubles the table and adds all values again.
+	 */
+	private void grow() {
+		long[] old = table;
+		table = new long[old.length * 2];
+		int mask = table.length - 1;
+		for (long value : old) {
+			if (value != 0) {
+				int slot = slot(value, mask);
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = value;
+			}
+		}
+	}
+
+	/**
+	 * Returns the first slot to try for the provided value. Zobrist hashes are
+	 * random already, the multiplication only spreads values that are not.
+	 */
+	private static int slot(long value, int mask) {
+		return (int) ((value * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+
+}
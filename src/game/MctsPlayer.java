@@ -0,0 +1,697 @@
+package game;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import exceptions.ExitProgram;
+
+/**
+ * A computer player that picks its moves with Monte-Carlo Tree Search (UCT).
+ * Every playout walks down a tree of the positions searched so far, choosing
+ * the move with the best upper confidence bound at each position, adds one new
+ * position to the tree, plays the game out with random legal moves (see
+ * Playout) and counts the score. The result is added to every position on the
+ * way down, so the tree grows towards the most promising moves. The move
+ * played is the one at the root that was searched most.
+ *
+ * The search can run on several threads of a ForkJoinPool at once, in one of
+ * two ways. With tree parallelism all threads search one shared tree: the
+ * counts of a position are only ever incremented atomically, without a lock,
+ * and a playout counts its visit on the way down but its win only on the way
+ * back up, so while it runs the position looks like a loss (a virtual loss)
+ * and the other threads spread out over other moves. With root parallelism
+ * every thread searches a tree of its own, and the counts of the moves at the
+ * roots are added up at the end; the threads then share nothing at all.
+ *
+ * The counts of positions are also kept in a transposition table, keyed by the
+ * position, which the threads share and which is kept from one move to the
+ * next. A position that is added to the tree starts with the counts the table
+ * has for it, found under another order of moves or in an earlier search, so a
+ * search does not start from nothing every turn.
+ *
+ * The tree itself is kept after a search as well. When the player is told the
+ * move of the opponent, it goes down the tree to the position after its own
+ * move and that reply, cuts that part loose from the rest (which the garbage
+ * collector then takes away as a whole) and continues the next search from it.
+ *
+ * The search runs for a number of playouts, or for a time, per move. The number
+ * of playouts per second of the last search is kept, which makes this player
+ * the benchmark of how fast the engine is.
+ */
+public class MctsPlayer extends ComputerPlayer {
+
+	/**
+	 * Name of the system property with the number of playouts per move. If it is
+	 * not set, the time per move is used.
+	 */
+	public static final String PLAYOUTS_PROPERTY = "go.mcts.playouts";
+
+	/**
+	 * Name of the system property with the time per move in milliseconds (default
+	 * 1000), used when no number of playouts is set.
+	 */
+	public static final String TIME_PROPERTY = "go.mcts.time";
+
+	/**
+	 * Name of the system property with the number of threads that search
+	 * (default: the number of processors).
+	 */
+	public static final String THREADS_PROPERTY = "go.mcts.threads";
+
+	/**
+	 * Name of the system property that selects how the threads search: "tree"
+	 * (default) for one shared tree, or "root" for a tree per thread.
+	 */
+	public static final String PARALLEL_PROPERTY = "go.mcts.parallel";
+
+	/**
+	 * Name of the system property with the number of entries of the
+	 * transposition table (default TABLE_SIZE), 0 for none.
+	 */
+	public static final String TABLE_PROPERTY = "go.mcts.table";
+
+	/**
+	 * The default number of entries of the transposition table (two longs each).
+	 */
+	public static final int TABLE_SIZE = 1 << 18;
+
+	/**
+	 * How much the search explores moves that have been searched little, compared
+	 * to playing the moves that won most.
+	 */
+	private static final double EXPLORATION = 0.7;
+
+	/**
+	 * If the best move wins fewer playouts than this, the game is lost anyway and
+	 * this player passes.
+	 */
+	private static final double PASS_RATE = 0.05;
+
+	/**
+	 * The move of the root of the tree, which was not made in the search.
+	 */
+	private static final int NO_MOVE = -2;
+
+	/**
+	 * The number of playouts per move, or 0 to search for timeBudget milliseconds
+	 * per move instead.
+	 */
+	private final int playoutBudget;
+	private final long timeBudget;
+
+	/**
+	 * The threads that search, or null to search on the thread that asks for the
+	 * move, and whether every thread searches a tree of its own.
+	 */
+	private final ForkJoinPool threads;
+	private final boolean rootParallel;
+
+	/**
+	 * The counts of the positions searched, by position, or null if positions are
+	 * not remembered. May be shared with other players.
+	 */
+	private final TranspositionTable table;
+
+	/**
+	 * The boards the search is done on.
+	 */
+	private final BoardPool pool = new BoardPool();
+
+	/**
+	 * Splits off the random generators of the searching threads.
+	 */
+	private SplittableRandom random = new SplittableRandom();
+
+	/**
+	 * The playouts that may still be started in the current search, if it has a
+	 * number of playouts, and the time it ends, if it has a time.
+	 */
+	private final AtomicInteger remaining = new AtomicInteger();
+	private long deadline;
+
+	/**
+	 * The number of playouts of the last search, and how long it took in
+	 * nanoseconds.
+	 */
+	private int playouts;
+	private long searchTime;
+
+	/**
+	 * The trees of the last search, moved down to the position after the move of
+	 * the opponent once that is known, or null if there is nothing to continue
+	 * from. Also the move this player made after the last search, and the number
+	 * of playouts the current search started with.
+	 */
+	private Node[] kept;
+	private int played;
+	private int reused;
+
+	/**
+	 * The playouts of the last search through every move at the root, indexed by
+	 * the move plus one (so a pass is at 0).
+	 */
+	private int[] rootVisits = new int[0];
+
+	/**
+	 * A position in the search tree: the move that led to it, made by the player
+	 * with the provided mark, the legal moves from it (in random order, of which
+	 * the first expanded have been added to the tree as children), and the
+	 * number of playouts through it and how many of them the player who made the
+	 * move won. The counts are only changed by atomic increments, so any number of
+	 * threads can search through a position at once. They start with the counts
+	 * the transposition table had for the position, which are remembered apart as
+	 * well, so the playouts of this tree itself can be told from them.
+	 */
+	private static final class Node {
+		private static final AtomicIntegerFieldUpdater<Node> EXPANDED = AtomicIntegerFieldUpdater
+				.newUpdater(Node.class, "expanded");
+		private static final AtomicIntegerFieldUpdater<Node> VISITS = AtomicIntegerFieldUpdater
+				.newUpdater(Node.class, "visits");
+		private static final AtomicIntegerFieldUpdater<Node> WINS = AtomicIntegerFieldUpdater
+				.newUpdater(Node.class, "wins");
+
+		private final int move;
+		private final Mark mark;
+		private final long key;
+		private Node parent;
+		private final int[] moves;
+		private final int moveCount;
+		private final AtomicReferenceArray<Node> children;
+		private volatile int expanded;
+		private volatile int visits;
+		private volatile int wins;
+		private int priorVisits;
+		private int priorWins;
+
+		/**
+		 * Creates a position with the provided key, reached by the move of the player
+		 * with the provided mark, from which the provided moves can be made, with
+		 * the visit of the playout that creates it already counted.
+		 */
+		Node(int move, Mark mark, long key, Node parent, int[] moves, int moveCount) {
+			this.move = move;
+			this.mark = mark;
+			this.key = key;
+			this.parent = parent;
+			this.moves = moves;
+			this.moveCount = moveCount;
+			this.children = new AtomicReferenceArray<>(moveCount);
+			this.visits = 1;
+		}
+
+		/**
+		 * Claims the next move that has not been added to the tree yet, and returns
+		 * its index, or -1 if every move has been claimed already.
+		 */
+		int claim() {
+			if (expanded >= moveCount) {
+				return -1;
+			}
+			int k = EXPANDED.getAndIncrement(this);
+			return k < moveCount ? k : -1;
+		}
+
+		/**
+		 * Returns the child with the highest upper confidence bound (UCT): its rate
+		 * of wins plus a bonus that is larger the less it has been searched. Returns
+		 * null if no child has been added yet.
+		 */
+		Node select() {
+			double logVisits = Math.log(visits);
+			Node best = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			int count = Math.min(expanded, moveCount);
+			for (int k = 0; k < count; k++) {
+				Node child = children.get(k);
+				if (child == null) {
+					// still being added by another thread
+					continue;
+				}
+				int n = child.visits;
+				double value = (double) child.wins / n + EXPLORATION * Math.sqrt(logVisits / n);
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Counts a playout through this position, on the way down.
+		 */
+		void visit() {
+			VISITS.incrementAndGet(this);
+		}
+
+		/**
+		 * Counts a win of the player who made the move, on the way back up.
+		 */
+		void win() {
+			WINS.incrementAndGet(this);
+		}
+
+		/**
+		 * Returns the number of passes in a row that led to this position.
+		 */
+		int passes() {
+			if (move != -1) {
+				return 0;
+			}
+			return parent != null && parent.move == -1 ? 2 : 1;
+		}
+	}
+
+	/**
+	 * The search done by one thread: playouts from the root board on a board of
+	 * its own, with random generators of its own, in a tree that it may share.
+	 */
+	private final class Searcher implements Runnable {
+		private final ArrayBoard root;
+		private final Node tree;
+		private final ArrayBoard board;
+		private final SplittableRandom random;
+		private final Playout playout;
+		private int playouts;
+
+		/**
+		 * Creates a searcher that searches the provided tree of the root board.
+		 */
+		Searcher(ArrayBoard root, Node tree, SplittableRandom random) {
+			this.root = root;
+			this.tree = tree;
+			this.board = pool.acquire(root);
+			this.random = random;
+			this.playout = new Playout(random.nextLong());
+		}
+
+		/**
+		 * Does playouts until the budget of the search has been used up.
+		 */
+		public void run() {
+			int points = root.getBoardSize() * root.getBoardSize();
+			while (playoutBudget > 0 ? remaining.getAndDecrement() > 0 : System.nanoTime() < deadline) {
+				board.copyFrom(root);
+				board.setMoveLimit(root.getMoveCount() + 3 * points);
+				search();
+				playouts++;
+			}
+			pool.release(board);
+		}
+
+		/**
+		 * Does one playout: walks down the tree from the root, adds a new position to
+		 * it, plays the game out at random and adds the result to the positions on
+		 * the way.
+		 */
+		private void search() {
+			Node node = tree;
+			node.visit();
+			while (true) {
+				int k = node.claim();
+				if (k >= 0) {
+					node = expand(node, k);
+					break;
+				}
+				Node next = node.select();
+				if (next == null) {
+					break;
+				}
+				node = next;
+				node.visit();
+				board.play(node.move, node.mark);
+			}
+			boolean blackWins = playout.run(board, node.mark.other(), node.passes());
+			for (Node v = node; v != null; v = v.parent) {
+				boolean won = (v.mark == Mark.B) == blackWins;
+				if (won) {
+					v.win();
+				}
+				if (table != null && v.moves != null) {
+					table.add(v.key, 1, won ? 1 : 0);
+				}
+			}
+		}
+
+		/**
+		 * Makes the k-th move of the position on the board and adds the position it
+		 * leads to to the tree, with the counts the transposition table has for it.
+		 */
+		private Node expand(Node node, int k) {
+			Mark mark = node.mark.other();
+			int move = node.moves[k];
+			board.play(move, mark);
+			Node child;
+			if (move == -1 && node.move == -1) {
+				// two passes in a row end the game
+				child = new Node(move, mark, 0, node, null, 0);
+			} else {
+				int[] moves = new int[board.getCount(Mark.U) + 1];
+				child = new Node(move, mark, key(board, move, mark), node, moves,
+						legalMoves(board, mark.other(), moves, random));
+				seed(child);
+			}
+			node.children.set(k, child);
+			return child;
+		}
+	}
+
+	/**
+	 * Creates a new MCTS player, with the number of playouts or the time per move
+	 * and the number of threads and how they search from the system properties.
+	 */
+	public MctsPlayer(String name, Mark mark) {
+		this(name, mark, Integer.getInteger(PLAYOUTS_PROPERTY, 0), Long.getLong(TIME_PROPERTY, 1000),
+				newPool(Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors())),
+				"root".equals(System.getProperty(PARALLEL_PROPERTY)),
+				newTable(Integer.getInteger(TABLE_PROPERTY, TABLE_SIZE)));
+	}
+
+	/**
+	 * Creates a new MCTS player that searches on one thread and does the provided
+	 * number of playouts per move, or, if that is 0, searches for the provided
+	 * number of milliseconds per move.
+	 */
+	public MctsPlayer(String name, Mark mark, int playoutBudget, long timeBudget) {
+		this(name, mark, playoutBudget, timeBudget, null, false, newTable(TABLE_SIZE));
+	}
+
+	/**
+	 * Creates a new MCTS player like MctsPlayer(String, Mark, int, long) that
+	 * searches on as many threads of the provided pool as it has, in one shared
+	 * tree or, if rootParallel is true, in a tree per thread. Without a pool it
+	 * searches on the thread that asks for the move. The player keeps the counts
+	 * of the positions it searches in the provided transposition table, which may
+	 * be shared with other players, or in none if it is null.
+	 */
+	public MctsPlayer(String name, Mark mark, int playoutBudget, long timeBudget, ForkJoinPool threads,
+			boolean rootParallel, TranspositionTable table) {
+		super(name, mark);
+		this.playoutBudget = playoutBudget;
+		this.timeBudget = timeBudget;
+		this.threads = threads;
+		this.rootParallel = rootParallel;
+		this.table = table;
+	}
+
+	/**
+	 * Returns a pool with the provided number of threads, or null for a single
+	 * thread.
+	 */
+	private static ForkJoinPool newPool(int parallelism) {
+		return parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	/**
+	 * Returns a transposition table with the provided number of entries, or null
+	 * if that is 0.
+	 */
+	private static TranspositionTable newTable(int entries) {
+		return entries > 0 ? new TranspositionTable(entries) : null;
+	}
+
+	/**
+	 * Searches the position on the board and returns the move searched most, or
+	 * -1 (pass) if there is no legal move or every move loses.
+	 */
+	@Override
+	public int determineMove(GoBoard board) throws ExitProgram {
+		ArrayBoard root = rootBoard(board);
+		int workers = threads == null ? 1 : threads.getParallelism();
+		Node[] trees = reuse(root, rootParallel ? workers : 1);
+		reused = 0;
+		if (trees == null) {
+			trees = new Node[rootParallel ? workers : 1];
+			for (int t = 0; t < trees.length; t++) {
+				trees[t] = newTree(root);
+			}
+		} else {
+			for (Node tree : trees) {
+				reused += tree.visits - tree.priorVisits;
+			}
+		}
+		Searcher[] searchers = new Searcher[workers];
+		for (int t = 0; t < workers; t++) {
+			searchers[t] = new Searcher(root, trees[rootParallel ? t : 0], random.split());
+		}
+
+		long start = System.nanoTime();
+		remaining.set(playoutBudget);
+		deadline = start + timeBudget * 1000000L;
+		if (threads == null) {
+			searchers[0].run();
+		} else {
+			ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[workers];
+			for (int t = 0; t < workers; t++) {
+				tasks[t] = threads.submit(searchers[t]);
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		}
+		searchTime = System.nanoTime() - start;
+		playouts = 0;
+		for (Searcher searcher : searchers) {
+			playouts += searcher.playouts;
+		}
+		pool.release(root);
+
+		int move = bestMove(trees, root.getBoardSize() * root.getBoardSize());
+		if (move < 0 || !board.isLegal(move, getMark())) {
+			move = -1;
+		}
+		kept = trees;
+		played = move;
+		return move;
+	}
+
+	/**
+	 * Moves the kept trees down past the move this player made and the provided
+	 * move of the opponent, so the next search can continue from there. Forgets
+	 * them if that part has not been searched.
+	 */
+	@Override
+	public void opponentMoved(int move) {
+		if (kept == null) {
+			return;
+		}
+		for (int t = 0; t < kept.length; t++) {
+			Node mine = child(kept[t], played);
+			kept[t] = mine == null ? null : child(mine, move);
+			if (kept[t] == null) {
+				kept = null;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the kept trees if there are as many as asked for and they are about
+	 * the position on the root board with this player to move, after cutting them
+	 * loose from their parents. Returns null otherwise. The kept trees are
+	 * forgotten either way.
+	 */
+	private Node[] reuse(ArrayBoard root, int count) {
+		Node[] trees = kept;
+		kept = null;
+		if (trees == null || trees.length != count) {
+			return null;
+		}
+		for (Node tree : trees) {
+			if (tree.mark != getMark().other() || tree.moves == null
+					|| tree.key != key(root, tree.move, tree.mark)) {
+				return null;
+			}
+		}
+		for (Node tree : trees) {
+			tree.parent = null;
+		}
+		return trees;
+	}
+
+	/**
+	 * Returns the child of the node reached by the provided move, or null if it
+	 * has not been added to the tree.
+	 */
+	private static Node child(Node node, int move) {
+		for (int k = 0; k < Math.min(node.expanded, node.moveCount); k++) {
+			Node child = node.children.get(k);
+			if (child != null && child.move == move) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the root of a new tree for the position on the root board.
+	 */
+	private Node newTree(ArrayBoard root) {
+		int[] moves = new int[root.getCount(Mark.U) + 1];
+		Node tree = new Node(NO_MOVE, getMark().other(), key(root, NO_MOVE, getMark().other()), null, moves,
+				legalMoves(root, getMark(), moves, random));
+		tree.visits = 0;
+		seed(tree);
+		return tree;
+	}
+
+	/**
+	 * Adds the counts the transposition table has for the position of the node to
+	 * the node, before it is part of the tree, and remembers them as its prior
+	 * counts.
+	 */
+	private void seed(Node node) {
+		if (table != null) {
+			long entry = table.get(node.key);
+			node.priorVisits = TranspositionTable.getPlayouts(entry);
+			node.priorWins = TranspositionTable.getWins(entry);
+			node.visits += node.priorVisits;
+			node.wins += node.priorWins;
+		}
+	}
+
+	/**
+	 * Returns the key in the transposition table of the position on the board
+	 * after the move (-1 for a pass) of the player with the provided mark. The
+	 * Zobrist hash of the board does not tell the size of the board or who moved,
+	 * so those are mixed in, and a pass changes the key as well.
+	 */
+	private static long key(ArrayBoard board, int move, Mark mark) {
+		long key = board.getHash() ^ board.getBoardSize() * 0x9E3779B97F4A7C15L;
+		if (mark == Mark.B) {
+			key ^= 0x632BE59BD9B4E019L;
+		}
+		if (move == -1) {
+			key ^= 0x8CB92BA72F3D8DD7L;
+		}
+		return key;
+	}
+
+	/**
+	 * Adds up the counts of every move at the roots of the trees and returns the
+	 * move searched most, or -1 (pass) if it wins fewer playouts than PASS_RATE or
+	 * nothing has been searched. With a tree per thread, every tree starts from
+	 * the same transposition table, so only the playouts of the trees themselves
+	 * are added up, without their prior counts, which would otherwise be counted
+	 * once per tree.
+	 */
+	private int bestMove(Node[] trees, int points) {
+		int[] visits = new int[points + 1];
+		int[] wins = new int[points + 1];
+		boolean own = trees.length > 1;
+		for (Node tree : trees) {
+			for (int k = 0; k < Math.min(tree.expanded, tree.moveCount); k++) {
+				Node child = tree.children.get(k);
+				if (child != null) {
+					visits[child.move + 1] += own ? child.visits - child.priorVisits : child.visits;
+					wins[child.move + 1] += own ? child.wins - child.priorWins : child.wins;
+				}
+			}
+		}
+		rootVisits = visits;
+		int best = 0;
+		for (int m = 1; m <= points; m++) {
+			if (visits[m] > visits[best]) {
+				best = m;
+			}
+		}
+		if (visits[best] == 0 || (double) wins[best] / visits[best] < PASS_RATE) {
+			return -1;
+		}
+		return best - 1;
+	}
+
+	/**
+	 * Writes the legal moves of the player with the provided mark and a pass into
+	 * the provided array, in random order, and returns how many there are.
+	 */
+	private static int legalMoves(ArrayBoard board, Mark mark, int[] moves, SplittableRandom random) {
+		int count = 0;
+		for (int k = 0; k < board.getCount(Mark.U); k++) {
+			int i = board.getEmpty(k);
+			if (board.isLegal(i, mark)) {
+				moves[count++] = i;
+			}
+		}
+		moves[count++] = -1;
+		for (int k = count - 1; k > 0; k--) {
+			int j = random.nextInt(k + 1);
+			int move = moves[k];
+			moves[k] = moves[j];
+			moves[j] = move;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns a board of the pool with the position of the provided board. An
+	 * ArrayBoard is copied with its Ko history; any other board is copied stone by
+	 * stone, without it.
+	 */
+	private ArrayBoard rootBoard(GoBoard board) {
+		if (board instanceof ArrayBoard) {
+			return pool.acquire((ArrayBoard) board);
+		}
+		ArrayBoard root = new ArrayBoard(board.getBoardSize(), false);
+		for (int i = 0; i < board.getBoardSize() * board.getBoardSize(); i++) {
+			if (board.getMark(i) != Mark.U) {
+				root.addStone(board.getCol(i), board.getRow(i), board.getMark(i));
+			}
+		}
+		return root;
+	}
+
+	/**
+	 * Starts the random generator of this player from the provided seed, so that
+	 * its searches on a single thread with a number of playouts can be repeated
+	 * exactly.
+	 */
+	public void setSeed(long seed) {
+		random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Returns the playouts through the provided move at the root (-1 for a pass)
+	 * the last search chose its move by, of all trees together: including those of
+	 * a tree kept from the search before, and with a single tree also the prior
+	 * counts from the transposition table (see bestMove).
+	 */
+	public int getVisits(int move) {
+		return move + 1 < rootVisits.length ? rootVisits[move + 1] : 0;
+	}
+
+	/**
+	 * Returns the transposition table of this player, or null if it has none.
+	 */
+	public TranspositionTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Returns the number of playouts the last search had from the search before it,
+	 * 0 if it started with a new tree.
+	 */
+	public int getReusedPlayouts() {
+		return reused;
+	}
+
+	/**
+	 * Returns the number of playouts of the last search, of all threads together.
+	 */
+	public int getPlayouts() {
+		return playouts;
+	}
+
+	/**
+	 * Returns the number of playouts per second of the last search, of all threads
+	 * together.
+	 */
+	public double getPlayoutRate() {
+		return searchTime == 0 ? 0 : playouts * 1e9 / searchTime;
+	}
+
+}
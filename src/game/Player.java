@@ -28,12 +28,20 @@ public abstract class Player {
 	/**
 	 * Determines the next move. Returns the intersection number or -1 for pass.
 	 */
-	public abstract int determineMove(Board board) throws ExitProgram;
+	public abstract int determineMove(GoBoard board) throws ExitProgram;
+
+	/**
+	 * Tells this player the move the opponent made (the intersection number or -1
+	 * for pass), after it has been made on the board. Does nothing, unless a
+	 * player wants to keep track of the moves.
+	 */
+	public void opponentMoved(int move) {
+	}
 
 	/**
 	 * Makes a move on the board.
 	 */
-	public int makeMove(Board board) throws ExitProgram {
+	public int makeMove(GoBoard board) throws ExitProgram {
 		int i = determineMove(board);
 		if (i == -1) {
 			return i;
@@ -43,6 +51,13 @@ public abstract class Player {
 		}
 	}
 
+	/**
+	 * Getter method for the mark of this player.
+	 */
+	public Mark getMark() {
+		return this.mark;
+	}
+
 	/**
 	 * Getter method for the name of this player.
 	 */
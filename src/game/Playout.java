@@ -0,0 +1,105 @@
+package game;
+
+/**
+ * Plays games out with random moves, as fast as possible, which is what a
+ * Monte-Carlo search spends nearly all its time on. The moves are picked from
+ * the list of empty intersections the ArrayBoard keeps up to date, so nothing
+ * is scanned, and moves that fill an eye of the player are skipped with the
+ * cheap eye test of the board. Nothing is allocated per move.
+ *
+ * The random numbers come from a xorshift64* generator kept in a single long,
+ * which is faster than java.util.Random and has no locking or atomic updates. A
+ * playout is therefore not thread-safe: every thread should have one of its
+ * own, with a seed of its own. Any player can use it on an ArrayBoard.
+ */
+public class Playout {
+
+	/**
+	 * The state of the random generator, never 0.
+	 */
+	private long state;
+
+	/**
+	 * The number of moves (passes included) made by all playouts so far.
+	 */
+	private long moves;
+
+	/**
+	 * Creates a playout with a random generator started from the provided seed.
+	 */
+	public Playout(long seed) {
+		// xorshift stays at 0 forever, so a seed of 0 is replaced
+		state = seed != 0 ? seed : 0x9E3779B97F4A7C15L;
+	}
+
+	/**
+	 * Returns the next random long of the generator.
+	 */
+	public long nextLong() {
+		state ^= state >>> 12;
+		state ^= state << 25;
+		state ^= state >>> 27;
+		return state * 0x2545F4914F6CDD1DL;
+	}
+
+	/**
+	 * Returns a random int from 0 up to (but not including) bound, which should be
+	 * positive. Uses a multiplication instead of a division.
+	 */
+	public int nextInt(int bound) {
+		return (int) (((nextLong() >>> 32) * bound) >>> 32);
+	}
+
+	/**
+	 * Plays the game on the board out with random moves, starting with the player
+	 * with the provided mark after the provided number of passes in a row, until
+	 * both players pass or the board is full or the move limit of the board is
+	 * reached. Returns true if black wins.
+	 */
+	public boolean run(ArrayBoard board, Mark mark, int passes) {
+		while (passes < 2 && !board.gameOver()) {
+			if (randomMove(board, mark) != -1) {
+				passes = 0;
+			} else {
+				passes++;
+			}
+			mark = mark.other();
+		}
+		board.countScore();
+		return board.getBlackScore() > board.getWhiteScore();
+	}
+
+	/**
+	 * Plays a random legal move on the board for the player with the provided
+	 * mark that does not fill one of its own eyes, or passes if there is none.
+	 * The empty intersections are tried in order from a random one onwards, so
+	 * usually the first one tried is played. Returns the move, or -1 if the player
+	 * passed.
+	 */
+	public int randomMove(ArrayBoard board, Mark mark) {
+		moves++;
+		int empty = board.getCount(Mark.U);
+		if (empty > 0) {
+			int k = nextInt(empty);
+			for (int tried = 0; tried < empty; tried++) {
+				int i = board.getEmpty(k);
+				if (!board.isEye(i, mark) && board.play(i, mark)) {
+					return i;
+				}
+				if (++k == empty) {
+					k = 0;
+				}
+			}
+		}
+		board.play(-1, mark);
+		return -1;
+	}
+
+	/**
+	 * Returns the number of moves made by all playouts so far.
+	 */
+	public long getMoves() {
+		return moves;
+	}
+
+}
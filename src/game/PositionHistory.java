@@ -0,0 +1,146 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of all previous board situations of a game (used for the
+ * Ko-rule). A situation is stored as its 64-bit Zobrist hash. Two different
+ * situations can, very rarely, have the same hash; if that must be ruled out,
+ * the full check can be turned on, in which case the board situations
+ * themselves are stored as well and compared whenever a hash repeats.
+ */
+public class PositionHistory {
+
+	/**
+	 * The hashes of all previous board situations.
+	 */
+	private LongHashSet hashes;
+
+	/**
+	 * The previous board situations (as returned by toString of the board) per
+	 * hash. Null unless the full check is turned on.
+	 */
+	private Map<Long, List<String>> situations;
+
+	/**
+	 * Creates an empty history.
+	 */
+	public PositionHistory() {
+		hashes = new LongHashSet(64);
+	}
+
+	/**
+	 * Turns the full check on or off. Turning it on forgets the situations that
+	 * were stored before, so it should be done before the first stone is placed.
+	 */
+	public void setFullCheck(boolean fullCheck) {
+		if (fullCheck) {
+			situations = new HashMap<>();
+		} else {
+			situations = null;
+		}
+	}
+
+	/**
+	 * Returns true if the full check is turned on.
+	 */
+	public boolean isFullCheck() {
+		return situations != null;
+	}
+
+	/**
+	 * Adds the current situation of the board, which has the provided hash, to the
+	 * history. Returns false (and stores nothing) if this situation has occurred
+	 * before.
+	 */
+	public boolean add(long hash, GoBoard board) {
+		if (situations == null) {
+			return hashes.add(hash);
+		}
+		String situation = board.toString();
+		List<String> sameHash = situations.get(hash);
+		if (sameHash == null) {
+			sameHash = new ArrayList<>(1);
+			situations.put(hash, sameHash);
+		} else if (sameHash.contains(situation)) {
+			return false;
+		}
+		sameHash.add(situation);
+		hashes.add(hash);
+		return true;
+	}
+
+	/**
+	 * Removes the current situation of the board, which has the provided hash,
+	 * from the history again. Used when a move is taken back.
+	 */
+	public void remove(long hash, GoBoard board) {
+		if (situations != null) {
+			List<String> sameHash = situations.get(hash);
+			if (sameHash != null) {
+				sameHash.remove(board.toString());
+				if (!sameHash.isEmpty()) {
+					return;
+				}
+				situations.remove(hash);
+			}
+		}
+		hashes.remove(hash);
+	}
+
+	/**
+	 * Returns true if a situation with the provided hash has occurred before.
+	 * Without the full check, this may (very rarely) be a different situation
+	 * with the same hash.
+	 */
+	public boolean contains(long hash) {
+		return hashes.contains(hash);
+	}
+
+	/**
+	 * Returns true if the situation after a move, which has the provided hash,
+	 * has occurred before. With the full check the situation itself is compared
+	 * as well; it is only worked out by the supplier when the hash repeats.
+	 */
+	public boolean wouldRepeat(long hash, Supplier<String> situation) {
+		if (!hashes.contains(hash)) {
+			return false;
+		}
+		if (situations == null) {
+			return true;
+		}
+		List<String> sameHash = situations.get(hash);
+		return sameHash != null && sameHash.contains(situation.get());
+	}
+
+	/**
+	 * Makes this history a copy of the other one. Only the full check copies
+	 * objects, the hashes themselves are copied in bulk.
+	 */
+	public void copyFrom(PositionHistory other) {
+		hashes.copyFrom(other.hashes);
+		if (other.situations == null) {
+			situations = null;
+		} else {
+			situations = new HashMap<>();
+			for (Map.Entry<Long, List<String>> entry : other.situations.entrySet()) {
+				situations.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * Forgets all previous board situations.
+	 */
+	public void clear() {
+		hashes.clear();
+		if (situations != null) {
+			situations.clear();
+		}
+	}
+
+}
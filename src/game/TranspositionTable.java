@@ -0,0 +1,160 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * A table of fixed size with the search statistics (playouts and wins) of
+ * positions, keyed by a hash of the position. The same position is reached by
+ * different orders of moves, and again in the search for the next move; the
+ * table lets a search start from what was found about it before instead of
+ * from nothing.
+ *
+ * The entries are kept in two long arrays, without objects: the statistics
+ * packed into one long, and the key XOR-ed with those statistics. An entry only
+ * counts as found if both still fit together, so the table needs no locks: an
+ * entry that another thread is halfway writing simply looks missing. Two
+ * threads adding to the same entry at once may lose one of the additions, which
+ * for statistics does not matter.
+ *
+ * A key is looked for in a bucket of four entries. If the key is not there and
+ * the bucket is full, the entry with the fewest playouts is replaced, so the
+ * positions searched most stay in the table.
+ */
+public class TranspositionTable {
+
+	/**
+	 * The number of entries in a bucket.
+	 */
+	private static final int BUCKET = 4;
+
+	/**
+	 * For every entry the playouts (upper 32 bits) and wins (lower 32 bits), 0 if
+	 * the entry is free.
+	 */
+	private final long[] data;
+
+	/**
+	 * For every entry its key XOR its data.
+	 */
+	private final long[] checks;
+
+	/**
+	 * The number of buckets minus one (a power of two minus one).
+	 */
+	private final int mask;
+
+	/**
+	 * Creates an empty table with room for the provided number of entries, which
+	 * is rounded up to a power of two.
+	 */
+	public TranspositionTable(int entries) {
+		int size = Integer.highestOneBit(Math.max(BUCKET, entries) - 1) << 1;
+		data = new long[size];
+		checks = new long[size];
+		mask = size / BUCKET - 1;
+	}
+
+	/**
+	 * Returns the statistics stored for the key, packed into one long (see
+	 * getPlayouts(long) and getWins(long)), or 0 if there are none.
+	 */
+	public long get(long key) {
+		int start = bucket(key);
+		for (int s = start; s < start + BUCKET; s++) {
+			long d = data[s];
+			if (d != 0 && (checks[s] ^ d) == key) {
+				return d;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Adds the provided playouts and wins to the statistics of the key. If the key
+	 * is not in the table yet, it takes the place of the entry of its bucket with
+	 * the fewest playouts.
+	 */
+	public void add(long key, int playouts, int wins) {
+		int start = bucket(key);
+		int victim = start;
+		long fewest = Long.MAX_VALUE;
+		for (int s = start; s < start + BUCKET; s++) {
+			long d = data[s];
+			if (d != 0 && (checks[s] ^ d) == key) {
+				store(s, key, d + pack(playouts, wins));
+				return;
+			}
+			long p = d >>> 32;
+			if (p < fewest) {
+				fewest = p;
+				victim = s;
+			}
+		}
+		store(victim, key, pack(playouts, wins));
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		Arrays.fill(data, 0);
+		Arrays.fill(checks, 0);
+	}
+
+	/**
+	 * Returns the number of entries in use. Walks the whole table.
+	 */
+	public int size() {
+		int size = 0;
+		for (long d : data) {
+			if (d != 0) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of entries the table has room for.
+	 */
+	public int capacity() {
+		return data.length;
+	}
+
+	/**
+	 * Returns the playouts of statistics returned by get(long).
+	 */
+	public static int getPlayouts(long entry) {
+		return (int) (entry >>> 32);
+	}
+
+	/**
+	 * Returns the wins of statistics returned by get(long).
+	 */
+	public static int getWins(long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * Writes the data and the check of an entry.
+	 */
+	private void store(int s, long key, long d) {
+		data[s] = d;
+		checks[s] = key ^ d;
+	}
+
+	/**
+	 * Packs playouts and wins into one long.
+	 */
+	private static long pack(int playouts, int wins) {
+		return ((long) playouts << 32) + wins;
+	}
+
+	/**
+	 * Returns the first entry of the bucket of the key.
+	 */
+	private int bucket(long key) {
+		return ((int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask) * BUCKET;
+	}
+
+}
@@ -0,0 +1,56 @@
+package game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for hashing board situations. Every combination of intersection
+ * and stone colour gets a random 64-bit key, and the hash of a board situation
+ * is the XOR of the keys of all stones on the board. Placing or removing a stone
+ * therefore updates the hash with a single XOR.
+ */
+public class Zobrist {
+
+	/**
+	 * Seed of the random generator, fixed so that every board of the same size
+	 * hashes the same situation to the same value (also across runs).
+	 */
+	private static final long SEED = 0x5DEECE66DL;
+
+	/**
+	 * Keys generated so far, two per intersection (black and white). Grown when a
+	 * bigger board asks for keys; because the generator is seeded the same every
+	 * time, the keys of smaller boards never change.
+	 */
+	private static long[] keys = new long[0];
+
+	/**
+	 * Not meant to be instantiated.
+	 */
+	private Zobrist() {
+	}
+
+	/**
+	 * Returns the keys for a board with the provided number of intersections. The
+	 * key of a stone of colour c (ArrayBoard.BLACK or ArrayBoard.WHITE) on
+	 * intersection i is found at index 2 * i + c - 1.
+	 */
+	public static synchronized long[] keys(int points) {
+		if (keys.length < 2 * points) {
+			SplittableRandom random = new SplittableRandom(SEED);
+			long[] newKeys = new long[2 * points];
+			for (int k = 0; k < newKeys.length; k++) {
+				newKeys[k] = random.nextLong();
+			}
+			keys = newKeys;
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns the key of a stone of the provided mark (B or W) on intersection i.
+	 */
+	public static long key(long[] keys, int i, Mark mark) {
+		return keys[2 * i + mark.ordinal() - 1];
+	}
+
+}
@@ -0,0 +1,232 @@
+package protocol;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import exceptions.ProtocolException;
+import game.GoBoard;
+import game.Mark;
+
+/**
+ * Encoding of the binary version of the protocol, which a client can ask for
+ * with the binary extension in its handshake. The handshake itself is always
+ * sent as text; every message after it is a frame:
+ *
+ * two bytes with the length of the rest of the frame, one byte with the
+ * command (the same characters as in ProtocolMessages), and then its
+ * arguments, in the same order as in the text version. A move is a varint of
+ * the intersection plus one (0 for a pass), a list of intersections is a
+ * varint with the number of intersections followed by the intersections, and a
+ * board is one byte with the board size followed by 2 bits (the ordinal of the
+ * Mark) per intersection, four intersections per byte.
+ *
+ * All methods read from or write to the provided buffer at its position, so
+ * frames can be built and read directly in the buffers of a connection.
+ */
+public final class BinaryProtocol {
+
+	/**
+	 * The largest frame (with its length) that may be sent.
+	 */
+	public static final int MAX_FRAME = 1024;
+
+	/**
+	 * The number of bytes in front of every frame that hold its length.
+	 */
+	public static final int LENGTH_BYTES = 2;
+
+	/**
+	 * The marks by their ordinal, as they are packed on a board.
+	 */
+	private static final Mark[] MARKS = Mark.values();
+
+	/**
+	 * Only static methods, no instances.
+	 */
+	private BinaryProtocol() {
+	}
+
+	/**
+	 * Starts a new frame with the provided command. Returns the position of the
+	 * frame, to be passed to endFrame once its arguments have been written.
+	 */
+	public static int beginFrame(ByteBuffer buf, char command) {
+		int start = buf.position();
+		buf.putShort((short) 0);
+		buf.put((byte) command);
+		return start;
+	}
+
+	/**
+	 * Ends the frame that started at the provided position by filling in its
+	 * length.
+	 */
+	public static void endFrame(ByteBuffer buf, int start) {
+		buf.putShort(start, (short) (buf.position() - start - LENGTH_BYTES));
+	}
+
+	/**
+	 * Returns the length (with the length bytes) of the frame at the position of
+	 * the buffer, or -1 if the buffer does not hold the whole frame yet.
+	 *
+	 * @throws ProtocolException if the frame is empty or longer than MAX_FRAME
+	 */
+	public static int frameLength(ByteBuffer buf) throws ProtocolException {
+		if (buf.remaining() < LENGTH_BYTES) {
+			return -1;
+		}
+		int length = LENGTH_BYTES + bodyLength(buf, buf.position());
+		return buf.remaining() < length ? -1 : length;
+	}
+
+	/**
+	 * Returns the length (without the length bytes) of the frame whose length
+	 * bytes are at the provided index in the buffer.
+	 *
+	 * @throws ProtocolException if the frame is empty or longer than MAX_FRAME
+	 */
+	public static int bodyLength(ByteBuffer buf, int index) throws ProtocolException {
+		int length = buf.getShort(index) & 0xFFFF;
+		if (length == 0 || length > MAX_FRAME - LENGTH_BYTES) {
+			throw new ProtocolException("Not a valid frame length: " + length);
+		}
+		return length;
+	}
+
+	/**
+	 * Reads the length bytes and the command of the frame at the position of the
+	 * buffer, and returns the command.
+	 */
+	public static char getCommand(ByteBuffer buf) {
+		buf.position(buf.position() + LENGTH_BYTES);
+		return (char) buf.get();
+	}
+
+	/**
+	 * Returns the command of the frame at the position of the buffer, without
+	 * moving its position.
+	 */
+	public static char peekCommand(ByteBuffer buf) {
+		return (char) buf.get(buf.position() + LENGTH_BYTES);
+	}
+
+	/**
+	 * Reads an argument of one character, like a colour or V.
+	 *
+	 * @throws ProtocolException if the frame has ended
+	 */
+	public static char getChar(ByteBuffer buf) throws ProtocolException {
+		try {
+			return (char) buf.get();
+		} catch (BufferUnderflowException e) {
+			throw new ProtocolException("Frame ends before the argument");
+		}
+	}
+
+	/**
+	 * Writes a non-negative number in as few bytes as possible: seven bits per
+	 * byte, lowest first, with the highest bit set on every byte but the last.
+	 */
+	public static void putVarint(ByteBuffer buf, int value) {
+		while ((value & ~0x7F) != 0) {
+			buf.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buf.put((byte) value);
+	}
+
+	/**
+	 * Reads a number written by putVarint.
+	 *
+	 * @throws ProtocolException if the number does not end within five bytes or
+	 *                           within the frame
+	 */
+	public static int getVarint(ByteBuffer buf) throws ProtocolException {
+		int value = 0;
+		try {
+			for (int shift = 0; shift < 35; shift += 7) {
+				int b = buf.get();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new ProtocolException("Frame ends within a number");
+		}
+		throw new ProtocolException("Number longer than five bytes");
+	}
+
+	/**
+	 * Writes a move: an intersection, or -1 for a pass.
+	 */
+	public static void putMove(ByteBuffer buf, int move) {
+		putVarint(buf, move + 1);
+	}
+
+	/**
+	 * Reads a move written by putMove: an intersection, or -1 for a pass.
+	 */
+	public static int getMove(ByteBuffer buf) throws ProtocolException {
+		return getVarint(buf) - 1;
+	}
+
+	/**
+	 * Writes the board size and the marks of all intersections of the board.
+	 */
+	public static void putBoard(ByteBuffer buf, GoBoard board) {
+		int intersections = board.getBoardSize() * board.getBoardSize();
+		buf.put((byte) board.getBoardSize());
+		int packed = 0;
+		for (int i = 0; i < intersections; i++) {
+			packed |= board.getMark(i).ordinal() << ((i & 3) << 1);
+			if ((i & 3) == 3) {
+				buf.put((byte) packed);
+				packed = 0;
+			}
+		}
+		if ((intersections & 3) != 0) {
+			buf.put((byte) packed);
+		}
+	}
+
+	/**
+	 * Reads the board size of a board written by putBoard, after which the
+	 * position of the buffer is at the first of its packed marks.
+	 */
+	public static int getBoardSize(ByteBuffer buf) throws ProtocolException {
+		try {
+			return buf.get() & 0xFF;
+		} catch (BufferUnderflowException e) {
+			throw new ProtocolException("Frame ends before the board");
+		}
+	}
+
+	/**
+	 * Returns the mark of intersection i of the packed marks that start at the
+	 * provided index in the buffer, without moving its position.
+	 *
+	 * @throws ProtocolException if the marks do not fit in the frame or are not
+	 *                           valid
+	 */
+	public static Mark getMark(ByteBuffer buf, int start, int i) throws ProtocolException {
+		int index = start + (i >> 2);
+		if (index >= buf.limit()) {
+			throw new ProtocolException("Frame ends within the board");
+		}
+		int ordinal = (buf.get(index) >> ((i & 3) << 1)) & 3;
+		if (ordinal > 2) {
+			throw new ProtocolException("Not a valid mark on the board");
+		}
+		return MARKS[ordinal];
+	}
+
+	/**
+	 * Returns the number of bytes the packed marks of a board of the provided size
+	 * take.
+	 */
+	public static int packedLength(int boardSize) {
+		return (boardSize * boardSize + 3) >> 2;
+	}
+
+}
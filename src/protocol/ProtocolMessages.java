@@ -52,7 +52,29 @@ public class ProtocolMessages {
 	public static final char FINISHED = 'F';
 	// From server, indicates normal end of game (after double pass)
 	public static final char DISCONNECT = 'D';
-	// From server, indicates that other player disconnected (= end of game)
+	// From server, indicates that other player disconnected (= end of game); also
+	// sent to both players when the time of one of them has run out (E;D)
 	public static final char CHEAT = 'C'; // From server, to players (the non-cheating player wins!)
 	public static final char EXIT = 'X'; // From server, indicates that other player quit
+
+	// Protocol extensions, asked for by the client as a list in the sixth field of
+	// its handshake (H;version;name;colour;board size;extensions) and confirmed by
+	// the server in the fourth field of its handshake.
+	public static final String LIST_DELIMITER = ",";
+	// Separates the items of a list within one field
+	public static final String DELTA = "delta";
+	// Extension: TURN and RESULT carry the move and the captured intersections
+	// (T;move;captured and R;V;move;captured) instead of the whole board
+	public static final char SYNC = 'S';
+	// From player on its turn, before its move, to ask for the whole board;
+	// answered by the server with S;board
+	public static final String BINARY = "binary";
+	// Extension: every message after the handshake is a binary frame (see
+	// BinaryProtocol) instead of a line of text
+	public static final String BATCH = "batch";
+	// Extension: the server holds back RESULT and sends it together with the next
+	// TURN, in one write
+	public static final String STREAM = "stream";
+	// Extension: the server does not send RESULT after a valid move (the client
+	// knows its own move); it only sends the next TURN
 }
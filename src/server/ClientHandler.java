@@ -1,22 +1,40 @@
 package server;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
 //import java.net.SocketException;
 
 import exceptions.ExitProgram;
 import exceptions.ProtocolException;
 import game.Mark;
+import protocol.BinaryProtocol;
 import protocol.ProtocolMessages;
 
 /**
  * Handles the communication with one client.
  */
-public class ClientHandler implements Runnable {
+public class ClientHandler implements Runnable, GameClient {
+
+	/**
+	 * The size (in characters) of the buffers of the in- and output streams. A
+	 * message is never much longer than a 19x19 board, so the default of 8192
+	 * characters would mostly go unused, which adds up with thousands of clients.
+	 */
+	private static final int BUFFER_SIZE = 1024;
+
+	/**
+	 * Returned by readMove() when the client has closed the connection.
+	 */
+	private static final int DISCONNECTED = -2;
 
 	/**
 	 * The server, socket and in- and outputStreams.
@@ -37,181 +55,282 @@ public class ClientHandler implements Runnable {
 	private Mark mark;
 
 	/**
-	 * Set to true as soon as two players are connected to the game that this
-	 * ClientHandler plays on.
+	 * The game this ClientHandler plays in, which holds the board and whose turn it
+	 * is. Set by the server as soon as an opponent has connected; null until then.
+	 */
+	private volatile GameSession session;
+
+	/**
+	 * Counted down once the session has been set, which wakes up the thread of
+	 * this ClientHandler waiting for an opponent.
+	 */
+	private final CountDownLatch paired = new CountDownLatch(1);
+
+	/**
+	 * Set to true once this ClientHandler has been shut down.
 	 */
-	volatile boolean twoPlayers = false;
+	private volatile boolean closed;
 
 	/**
-	 * When true, the player with colour white should play; when false, the player
-	 * with colour black should play. TODO other solution for determining whose turn
-	 * it is, so that more games can be played simultaneously.
+	 * Set to true if the client asked for the delta extension in its handshake.
 	 */
-	volatile static private boolean whiteTurn;
+	private boolean delta;
 
 	/**
-	 * The last move of the opponent player. In the beginning and after a pass, it's
-	 * value should be -1.
+	 * Set to true if the client asked for the binary extension in its handshake,
+	 * after which frames are read from frameIn and written from frameOut instead
+	 * of lines of text. The client only sends frames after it has read the reply
+	 * to its handshake, so the reader of the text has nothing left to read then.
 	 */
-	volatile static private int lastMove;
+	private boolean binary;
 
 	/**
-	 * The amount of consecutive passes.
+	 * Set to true if the client asked for the batch extension, after which the
+	 * result of its move is held back and written together with its next turn,
+	 * or for the stream extension, after which the result is not sent at all.
 	 */
-	volatile static private int noPasses;
+	private boolean batch;
+	private boolean stream;
+	private DataInputStream frameIn;
+	private ByteBuffer inFrame;
+	private ByteBuffer outFrame;
 
 	/**
 	 * Constructs a new ClientHandler. Opens the In- and OutputStreams.
 	 */
 	public ClientHandler(Socket sock, Server srv, String name) {
 		try {
-			in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
-			out = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream()));
+			in = new BufferedReader(new InputStreamReader(sock.getInputStream()), BUFFER_SIZE);
+			out = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream()), BUFFER_SIZE);
 			this.sock = sock;
 			this.srv = srv;
 			this.name = name;
 		} catch (IOException e) {
-			System.out.println("IOException in ClientHandler constructor!");
+			srv.log.warn("> [{}] Could not open the streams: {}", name, e.getMessage());
 			shutdown();
 		}
 	}
 
 	/**
 	 * First handle the Handshake as defined in the protocol. Then wait for the sign
-	 * of the Server that there are two players assigned to a game and the game will
-	 * start. After that, continuously send the client that it is their turn and the
+	 * of the Server that there are two players assigned to a game session and the
+	 * game will start. After that, continuously send the client that it is their turn and the
 	 * last move of the opponent player, listen to their response, and handle it.
 	 */
 	public void run() {
 		try {
 			try {
 				doHandshake();
-				while (!twoPlayers) {
-					// wait for second player
-				}
+				// wait for second player, and after that for every turn, without spinning
+				paired.await();
 				sendStart();
-				String msg;
-				if (this.mark == Mark.W) {
-					while (!whiteTurn) {
-						// black should make the first move
-						// if white, wait till it's white's turn
+				// black should make the first move
+				while (session.awaitTurn(mark)) {
+					sendTurn();
+					srv.log.debug(game(), "{} should now make a move!", name);
+					int move = readMove();
+					if (move == DISCONNECTED || session.isClosed()) {
+						// the client has closed the connection, or its time has run out
+						break;
 					}
+					doMove(move);
+					session.endTurn();
 				}
-
-				while (true) {
-					this.sendTurn();
-					msg = in.readLine();
-					srv.view.showMessage(("> [" + name + "] Incoming: " + msg));
-					handleCommand(msg);
-					ClientHandler.whiteTurn = !ClientHandler.whiteTurn;
-					if (this.mark == Mark.W) {
-						while (!whiteTurn) {
-							// wait till it's white's turn again
-						}
-					} else if (this.mark == Mark.B) {
-						while (whiteTurn) {
-							// wait till it's black's turn again
-						}
-					}
+				// the opponent has left or a flag has fallen, so this game is over
+				if (session.getTimedOut() != null) {
+					sendEnd();
 				}
+				shutdown();
 			}
 
 			catch (ProtocolException | NumberFormatException | ExitProgram e) {
 				// in case of a ProtocolException, disconnect the client
-				System.out.println(name + " did not adhere to the protocol, disconnect " + name);
+				srv.log.warn("{} did not adhere to the protocol, disconnect {}", name, name);
+				shutdown();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 				shutdown();
 			}
 		} catch (IOException e) {
 			// this happens purposely
-			System.out.println("Shutting down. Goodbye!");
+			srv.log.info("Shutting down. Goodbye!");
 			shutdown();
 		}
 	}
 
 	/**
-	 * Handles commands received from the client by calling the doMove method via
-	 * the Server or, in the case of a pass, doing nothing and then writing back
-	 * according to the protocol.
-	 */
-	private void handleCommand(String msg) throws IOException, ProtocolException, NumberFormatException, ExitProgram {
-
-		if (msg.charAt(0) == ProtocolMessages.MOVE) {
-			String[] msgSplit = msg.split(ProtocolMessages.DELIMITER);
-			if (msgSplit.length > 1 && msgSplit[1] != null && isInteger(msgSplit[1])) {
-				ClientHandler.lastMove = Integer.parseInt(msgSplit[1]);
-				ClientHandler.noPasses = 0;
-				this.srv.doMove(this.mark, Integer.parseInt(msgSplit[1]));
-				out.write(String.valueOf(ProtocolMessages.RESULT + ProtocolMessages.DELIMITER + ProtocolMessages.VALID
-						+ ProtocolMessages.DELIMITER + srv.getBoard()));
-			} else if (msgSplit.length > 1 && msgSplit[1] != null
-					&& msgSplit[1].contentEquals(String.valueOf(ProtocolMessages.PASS))) {
-				ClientHandler.lastMove = -1;
-				ClientHandler.noPasses++;
-				out.write(String.valueOf(ProtocolMessages.RESULT + ProtocolMessages.DELIMITER + ProtocolMessages.VALID
-						+ ProtocolMessages.DELIMITER + srv.getBoard()));
+	 * Reads commands from the client until it sends its move, and returns the move
+	 * (-1 for a pass), or DISCONNECTED if the client has closed the connection. A
+	 * request for the whole board is answered right away.
+	 */
+	private int readMove() throws IOException, ProtocolException {
+		while (true) {
+			if (binary) {
+				if (!readFrame()) {
+					return DISCONNECTED;
+				}
+				if (!ServerMessages.isSync(inFrame)) {
+					return ServerMessages.getMove(inFrame);
+				}
 			} else {
-				throw new ProtocolException("You did not send me a move!");
+				String msg = in.readLine();
+				if (msg == null) {
+					return DISCONNECTED;
+				}
+				srv.log.debug(game(), "> [{}] Incoming: {}", name, msg);
+				if (!ServerMessages.isSync(msg)) {
+					return ServerMessages.parseMove(msg);
+				}
+			}
+			sendBoard();
+		}
+	}
+
+	/**
+	 * Reads the next frame of the client into inFrame. Returns false if the client
+	 * has closed the connection.
+	 */
+	private boolean readFrame() throws IOException, ProtocolException {
+		try {
+			frameIn.readFully(inFrame.array(), 0, BinaryProtocol.LENGTH_BYTES);
+			int length = BinaryProtocol.bodyLength(inFrame, 0);
+			frameIn.readFully(inFrame.array(), BinaryProtocol.LENGTH_BYTES, length);
+			inFrame.clear();
+			inFrame.limit(BinaryProtocol.LENGTH_BYTES + length);
+		} catch (EOFException e) {
+			return false;
+		}
+		srv.log.debug(game(), "> [{}] Incoming frame: {}", name, BinaryProtocol.peekCommand(inFrame));
+		return true;
+	}
+
+	/**
+	 * Does the move of the client by calling the doMove or doPass method of the
+	 * game session of this client, and answers it according to the protocol. With
+	 * the batch extension the answer is only written, without being sent, so that
+	 * it goes out together with the next turn; with the stream extension there is
+	 * no answer.
+	 */
+	private void doMove(int move) throws IOException, ExitProgram {
+		if (move == -1) {
+			session.doPass();
+		} else {
+			session.doMove(this.mark, move);
+		}
+		if (stream) {
+			return;
+		}
+		if (binary) {
+			ServerMessages.putResult(outFrame, session, delta);
+			if (!batch) {
+				sendFrame();
 			}
-			out.newLine();
-			out.flush();
+		} else if (batch) {
+			write(ServerMessages.result(session, delta));
+		} else {
+			send(ServerMessages.result(session, delta));
 		}
+	}
 
-		// apparently, the received message does not correspond to the protocol
-		else {
-			throw new ProtocolException("You did not send me a valid command!");
+	/**
+	 * Sends the client that the game starts.
+	 */
+	private void sendStart() throws IOException {
+		if (binary) {
+			ServerMessages.putStart(outFrame, session, mark);
+			sendFrame();
+		} else {
+			send(ServerMessages.start(session, mark));
 		}
 	}
 
 	/**
-	 * Sends to a Client that it is his turn. If the opponent's last move was a
-	 * Pass, send this to the Client, if his last move was putting a stone on the
-	 * board, send the intersection, according to the protocol.
+	 * Sends the client that it is its turn.
 	 */
-	public void sendTurn() throws IOException {
-		if (ClientHandler.lastMove == -1) {
-			srv.view.showMessage(
-					"Sending to " + this.name + ": " + String.valueOf(ProtocolMessages.TURN + ProtocolMessages.DELIMITER
-							+ srv.getBoard().toString() + ProtocolMessages.DELIMITER + ProtocolMessages.PASS));
-			out.write(String.valueOf(ProtocolMessages.TURN + ProtocolMessages.DELIMITER + srv.getBoard().toString()
-					+ ProtocolMessages.DELIMITER + ProtocolMessages.PASS));
+	private void sendTurn() throws IOException {
+		if (binary) {
+			ServerMessages.putTurn(outFrame, session, delta);
+			sendFrame();
 		} else {
-			srv.view.showMessage(
-					"Sending to " + this.name + ": " + String.valueOf(ProtocolMessages.TURN + ProtocolMessages.DELIMITER
-							+ srv.getBoard().toString() + ProtocolMessages.DELIMITER + ClientHandler.lastMove));
-			out.write(String.valueOf(ProtocolMessages.TURN + ProtocolMessages.DELIMITER + srv.getBoard().toString()
-					+ ProtocolMessages.DELIMITER + ClientHandler.lastMove));
+			send(ServerMessages.turn(session, delta));
 		}
-		out.newLine();
+	}
+
+	/**
+	 * Sends the client that the game is over.
+	 */
+	private void sendEnd() throws IOException {
+		if (binary) {
+			ServerMessages.putEnd(outFrame);
+			sendFrame();
+		} else {
+			send(ServerMessages.end());
+		}
+	}
+
+	/**
+	 * Sends the client the whole board.
+	 */
+	private void sendBoard() throws IOException {
+		if (binary) {
+			ServerMessages.putBoard(outFrame, session);
+			sendFrame();
+		} else {
+			send(ServerMessages.board(session));
+		}
+	}
+
+	/**
+	 * Sends a message to the client, followed by a new line, together with any
+	 * message written but not sent yet.
+	 */
+	private void send(String msg) throws IOException {
+		write(msg);
 		out.flush();
-		srv.view.showMessage(this.name + " should now make a move!");
 	}
 
 	/**
-	 * Send to the client that the game starts, according to the protocol
+	 * Writes a message for the client, followed by a new line, without sending it
+	 * yet.
 	 */
-	public void sendStart() throws IOException {
-		srv.view.showMessage("Sending to " + this.name + ": " + String.valueOf(ProtocolMessages.GAME
-				+ ProtocolMessages.DELIMITER + srv.getBoard().toString() + ProtocolMessages.DELIMITER + this.mark));
-		out.write(String.valueOf(ProtocolMessages.GAME + ProtocolMessages.DELIMITER + srv.getBoard().toString()
-				+ ProtocolMessages.DELIMITER + this.mark));
+	private void write(String msg) throws IOException {
+		srv.log.debug(game(), "Sending to {}: {}", name, msg);
+		out.write(msg);
 		out.newLine();
-		out.flush();
 	}
 
 	/**
-	 * Responds to the client's handshake, according to the protocol
+	 * Sends the frames written in outFrame to the client, and empties outFrame for
+	 * the next ones.
+	 */
+	private void sendFrame() throws IOException {
+		srv.log.debug(game(), "Sending to {}: frames of {} bytes", name, outFrame.position());
+		sock.getOutputStream().write(outFrame.array(), 0, outFrame.position());
+		outFrame.clear();
+	}
+
+	/**
+	 * Responds to the client's handshake, according to the protocol, and then asks
+	 * the matchmaker for an opponent with the board size and colour the client
+	 * asked for in the handshake. The extensions the client asks for are
+	 * confirmed in the response and used for the rest of the connection.
 	 */
 	private void doHandshake() throws IOException, ProtocolException {
 		String msg = in.readLine();
-		System.out.println("> [" + name + "] Incoming: " + msg);
-		if (msg.charAt(0) == ProtocolMessages.HANDSHAKE) {
-			srv.view.showMessage("Sending to " + this.name + ": "
-					+ String.valueOf(ProtocolMessages.HANDSHAKE + ProtocolMessages.DELIMITER + "1.0"
-							+ ProtocolMessages.DELIMITER + "Welcome to this server that will let you play Go!"));
-			out.write((String.valueOf(ProtocolMessages.HANDSHAKE + ProtocolMessages.DELIMITER + "1.0"
-					+ ProtocolMessages.DELIMITER + "Welcome to this server that will let you play Go!")));
-			out.newLine();
-			out.flush();
+		srv.log.debug(-1, "> [{}] Incoming: {}", name, msg);
+		if (msg != null && !msg.isEmpty() && msg.charAt(0) == ProtocolMessages.HANDSHAKE) {
+			delta = ServerMessages.asksFor(msg, ProtocolMessages.DELTA);
+			binary = ServerMessages.asksFor(msg, ProtocolMessages.BINARY);
+			batch = ServerMessages.asksFor(msg, ProtocolMessages.BATCH);
+			stream = ServerMessages.asksFor(msg, ProtocolMessages.STREAM);
+			if (binary) {
+				frameIn = new DataInputStream(new BufferedInputStream(sock.getInputStream(), BUFFER_SIZE));
+				inFrame = ByteBuffer.allocate(BinaryProtocol.MAX_FRAME);
+				// room for a result held back and the turn sent with it
+				outFrame = ByteBuffer.allocate(2 * BinaryProtocol.MAX_FRAME);
+			}
+			send(ServerMessages.handshake(ServerMessages.accept(msg)));
+			srv.getMatchmaker().enqueue(this, msg);
 		} else {
 			throw new ProtocolException("No handshake received from " + name);
 		}
@@ -222,78 +341,94 @@ public class ClientHandler implements Runnable {
 	 * OutputStreams.
 	 */
 	private void shutdown() {
-		System.out.println("> [" + name + "] Shutting down.");
+		closed = true;
+		srv.log.info("> [{}] Shutting down.", name);
+		if (outFrame != null && outFrame.position() > 0) {
+			// a result that was held back
+			try {
+				sendFrame();
+			} catch (IOException e) {
+				// the client is gone already
+			}
+		}
 		try {
 			in.close();
 			out.close();
 			sock.close();
 		} catch (IOException e) {
-			e.printStackTrace();
+			srv.log.warn("> [{}] Error while closing: {}", name, e.getMessage());
 		}
 		srv.removeClient(this);
+		if (session != null) {
+			srv.endSession(session);
+		}
 	}
 
 	/**
-	 * Getter method for the name of this ClientHandler.
+	 * Returns the number of the game this ClientHandler plays in, or -1 while it
+	 * is waiting for an opponent, for the log.
 	 */
-	public String getName() {
-		return this.name;
+	private int game() {
+		GameSession current = session;
+		return current == null ? -1 : current.getId();
 	}
 
 	/**
-	 * Setter method for the twoPlayers boolean.
+	 * Getter method for the name of this ClientHandler.
 	 */
-	public void setTwoPlayers(boolean twoPlayers) {
-		this.twoPlayers = twoPlayers;
+	public String getName() {
+		return this.name;
 	}
 
 	/**
-	 * Setter method for the whiteTurn boolean, should initially be set to false.
+	 * Setter method for the game session this ClientHandler plays in. Setting it
+	 * wakes up the thread of this ClientHandler, which starts the game.
 	 */
-	public void setWhiteTurn(boolean whiteTurn) {
-		ClientHandler.whiteTurn = whiteTurn;
+	public void setSession(GameSession session) {
+		this.session = session;
+		paired.countDown();
+		if (closed) {
+			// the client left while it was being paired
+			srv.endSession(session);
+		}
 	}
 
 	/**
-	 * Setter method for the colour associated with this ClientHandler.
+	 * Called by the session when it is closed. If the time of this client ran out
+	 * while the thread of this ClientHandler was waiting for its move, the input
+	 * of the socket is shut down, which wakes up that thread to end the game.
 	 */
-	public void setMark(Mark mark) {
-		this.mark = mark;
+	public void sessionClosed() {
+		GameSession current = session;
+		if (current != null && current.getTimedOut() == mark && !closed) {
+			try {
+				sock.shutdownInput();
+			} catch (IOException e) {
+				// the client is gone already
+			}
+		}
 	}
 
 	/**
-	 * Sets the last move of the opponent player. The provided parameter should be a
-	 * number representing an intersection or -1 in case the opponent passed.
+	 * Getter method for the game session this ClientHandler plays in (null while
+	 * waiting for an opponent).
 	 */
-	public void setLastMove(int lastMove) {
-		ClientHandler.lastMove = lastMove;
+	public GameSession getSession() {
+		return session;
 	}
 
 	/**
-	 * Sets the number of consecutive passes.
+	 * Setter method for the colour associated with this ClientHandler.
 	 */
-	public static void setNoPasses(int noPasses) {
-		ClientHandler.noPasses = noPasses;
+	public void setMark(Mark mark) {
+		this.mark = mark;
 	}
 
 	/**
-	 * Checks whether the provided String is parsable to a (decimal) integer.
+	 * Getter method for the colour associated with this ClientHandler.
 	 */
-	private boolean isInteger(String s) {
-		if (s.isEmpty())
-			return false;
-		for (int i = 0; i < s.length(); i++) {
-			if (i == 0 && s.charAt(i) == '-') {
-				if (s.length() == 1)
-					return false;
-				else
-					continue;
-			}
-			if (Character.digit(s.charAt(i), 10) < 0) {
-				return false;
-			}
-		}
-		return true;
+	public Mark getMark() {
+		return mark;
 	}
 
 }
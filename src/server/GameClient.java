@@ -0,0 +1,49 @@
+package server;
+
+import game.Mark;
+
+/**
+ * A client connected to the server that can play in a GameSession, whichever
+ * way the server talks to it: a ClientHandler with a thread of its own, or an
+ * NioClient served by an event loop of the NioTransport.
+ */
+public interface GameClient {
+
+	/**
+	 * Getter method for the name of this client.
+	 */
+	String getName();
+
+	/**
+	 * Setter method for the colour this client plays with.
+	 */
+	void setMark(Mark mark);
+
+	/**
+	 * Getter method for the colour this client plays with.
+	 */
+	Mark getMark();
+
+	/**
+	 * Setter method for the game session this client plays in. Setting it tells
+	 * the client the game starts; its first turn is started by the session, once
+	 * both clients have been given it (see GameSession.start()).
+	 */
+	void setSession(GameSession session);
+
+	/**
+	 * Called by the session when it has become the turn of this client, after its
+	 * opponent ended its turn. A client with a thread of its own waits for its
+	 * turn in GameSession.awaitTurn and can ignore this.
+	 */
+	default void turnStarted() {
+	}
+
+	/**
+	 * Called by the session when it is closed, for example because the opponent
+	 * has left.
+	 */
+	default void sessionClosed() {
+	}
+
+}
@@ -0,0 +1,122 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+
+import game.Mark;
+
+/**
+ * The clocks of the two players of a game: main time, followed by byo-yomi.
+ * Every player has the same main time for the whole game. Once that is used up,
+ * every move has to be made within one period; a move that takes longer uses up
+ * a period for every whole period it took. The flag of a player falls when it
+ * has no main time and no periods left.
+ *
+ * The clock does not watch the time itself: the session tells it when a turn
+ * starts and stops, with the time of System.nanoTime(), and asks how much time
+ * the player has left to set a timer. It is guarded by the lock of the session.
+ */
+public class GameClock {
+
+	/**
+	 * The main time left of black and white (by the ordinal of their mark), in
+	 * nanoseconds.
+	 */
+	private final long[] mainLeft = new long[3];
+
+	/**
+	 * The periods of byo-yomi left of black and white.
+	 */
+	private final int[] periodsLeft = new int[3];
+
+	/**
+	 * The length of one period of byo-yomi, in nanoseconds.
+	 */
+	private final long period;
+
+	/**
+	 * The player whose clock is running (null if none) and when its turn started.
+	 */
+	private Mark running;
+	private long turnStart;
+
+	/**
+	 * Creates clocks with the provided main time and byo-yomi for both players.
+	 */
+	public GameClock(long mainMillis, long periodMillis, int periods) {
+		this.period = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+		for (Mark mark : new Mark[] { Mark.B, Mark.W }) {
+			mainLeft[mark.ordinal()] = TimeUnit.MILLISECONDS.toNanos(mainMillis);
+			periodsLeft[mark.ordinal()] = periods;
+		}
+	}
+
+	/**
+	 * Starts the clock of the player with the provided mark at the provided time.
+	 */
+	public void start(Mark mark, long now) {
+		running = mark;
+		turnStart = now;
+	}
+
+	/**
+	 * Stops the clock of the player whose turn it was at the provided time, and
+	 * takes the time of the turn off its main time and periods. Returns false if
+	 * its flag has fallen.
+	 */
+	public boolean stop(long now) {
+		if (running == null) {
+			return true;
+		}
+		int player = running.ordinal();
+		running = null;
+		long elapsed = now - turnStart;
+		if (elapsed <= mainLeft[player]) {
+			mainLeft[player] -= elapsed;
+			return true;
+		}
+		long over = elapsed - mainLeft[player];
+		mainLeft[player] = 0;
+		if (over >= periodsLeft[player] * period) {
+			periodsLeft[player] = 0;
+			return false;
+		}
+		periodsLeft[player] -= (int) (over / period);
+		return true;
+	}
+
+	/**
+	 * Returns how many nanoseconds the player whose clock is running has left at
+	 * the provided time before its flag falls, or Long.MAX_VALUE if no clock is
+	 * running.
+	 */
+	public long timeLeft(long now) {
+		if (running == null) {
+			return Long.MAX_VALUE;
+		}
+		int player = running.ordinal();
+		return mainLeft[player] + periodsLeft[player] * period - (now - turnStart);
+	}
+
+	/**
+	 * Returns the player whose clock is running, or null if none is.
+	 */
+	public Mark getRunning() {
+		return running;
+	}
+
+	/**
+	 * Returns the main time left of the player with the provided mark, in
+	 * milliseconds.
+	 */
+	public long getMainLeft(Mark mark) {
+		return TimeUnit.NANOSECONDS.toMillis(mainLeft[mark.ordinal()]);
+	}
+
+	/**
+	 * Returns the periods of byo-yomi left of the player with the provided mark.
+	 */
+	public int getPeriodsLeft(Mark mark) {
+		return periodsLeft[mark.ordinal()];
+	}
+
+}
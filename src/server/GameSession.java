@@ -0,0 +1,423 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import exceptions.ExitProgram;
+import game.BoardListener;
+import game.GoBoard;
+import game.Mark;
+
+/**
+ * One game of Go played on the server between two clients. A GameSession owns
+ * the board of the game, whose turn it is, the last move and the number of
+ * consecutive passes, so every game on the server has its own state and games
+ * do not get in each other's way.
+ */
+public class GameSession {
+
+	/**
+	 * The number by which the server knows this session.
+	 */
+	private final int id;
+
+	/**
+	 * The board of this game.
+	 */
+	private final GoBoard board;
+
+	/**
+	 * The clients of the player with the black stones and of the player with the
+	 * white stones.
+	 */
+	private final GameClient black;
+	private final GameClient white;
+
+	/**
+	 * The lock that guards the state of this session, and the condition a player
+	 * waits on until it is its turn. A lock is used instead of synchronized and
+	 * wait(), because a virtual thread blocked in wait() holds on to its carrier
+	 * thread, while one waiting on a Condition lets it go.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition turnChanged = lock.newCondition();
+
+	/**
+	 * When true, the player with colour white should play; when false, the player
+	 * with colour black should play. Black makes the first move. Guarded by the
+	 * lock of this session: a player waiting for its turn waits on turnChanged,
+	 * and endTurn() signals it.
+	 */
+	private boolean whiteTurn;
+
+	/**
+	 * Set to true by start(), once both clients know about the game. Until then it
+	 * is nobody's turn, so no move can be made before both players are ready.
+	 */
+	private boolean started;
+
+	/**
+	 * Set to true when the session is over, which wakes up a player that is still
+	 * waiting for its turn.
+	 */
+	private boolean closed;
+
+	/**
+	 * The last move made in this game. In the beginning and after a pass, its value
+	 * is -1.
+	 */
+	private volatile int lastMove = -1;
+
+	/**
+	 * The amount of consecutive passes.
+	 */
+	private volatile int noPasses;
+
+	/**
+	 * The intersections whose stones were taken off the board by the last move,
+	 * and how many there are. Filled by a listener on the board, so the clients
+	 * can be sent what changed instead of the whole board.
+	 */
+	private int[] captured;
+	private volatile int capturedCount;
+
+	/**
+	 * The clocks of the players (null if the game has no time limit), the wheel
+	 * that runs the timer of the player whose clock is running, and that timer.
+	 * Guarded by the lock of this session.
+	 */
+	private GameClock clock;
+	private TimerWheel timers;
+	private TimerWheel.Timeout flag;
+
+	/**
+	 * The player whose flag has fallen, which ended the game; null if no flag has
+	 * fallen.
+	 */
+	private volatile Mark timedOut;
+
+	/**
+	 * Creates a new session with an empty board of the provided size (without a
+	 * GUI) for the provided players, black to move.
+	 */
+	public GameSession(int id, int boardSize, GameClient black, GameClient white) {
+		this.id = id;
+		this.board = GoBoard.newBoard(boardSize, false);
+		this.black = black;
+		this.white = white;
+		captured = new int[boardSize * boardSize];
+		board.addBoardListener(new BoardListener() {
+			@Override
+			public void stoneAdded(int col, int row, Mark mark) {
+			}
+
+			@Override
+			public void stoneRemoved(int col, int row) {
+				captured[capturedCount++] = board.coorToInt(col, row);
+			}
+		});
+	}
+
+	/**
+	 * Does the move (an intersection) of the player with the provided mark on the
+	 * board of this session, after checking whether the move is legal, so an
+	 * illegal move leaves the board untouched. Only this session is locked, so
+	 * moves in other games are not held up.
+	 *
+	 * @throws ExitProgram if the move is not legal
+	 */
+	public void doMove(Mark mark, int move) throws ExitProgram {
+		lock.lock();
+		try {
+			if (!board.isLegal(move, mark)) {
+				throw new ExitProgram("Move " + move + " of " + mark + " is not legal!");
+			}
+			int boardSize = board.getBoardSize();
+			capturedCount = 0;
+			board.putStone(move % boardSize, move / boardSize, mark);
+			lastMove = move;
+			noPasses = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Registers a pass of the player whose turn it is.
+	 */
+	public void doPass() {
+		lock.lock();
+		try {
+			lastMove = -1;
+			noPasses++;
+			capturedCount = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts the game, after both clients have been given this session: from now
+	 * on it is the turn of black, which is woken up if it waits in awaitTurn and
+	 * told that its turn has started, and its clock runs. Does nothing if the
+	 * session has been closed already.
+	 */
+	public void start() {
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			started = true;
+			turnChanged.signalAll();
+			startClock();
+		} finally {
+			lock.unlock();
+		}
+		if (black != null) {
+			black.turnStarted();
+		}
+	}
+
+	/**
+	 * Hands the turn to the other player: wakes up its ClientHandler if it is
+	 * waiting in awaitTurn, and tells the client that its turn has started.
+	 */
+	public void endTurn() {
+		GameClient next;
+		lock.lock();
+		try {
+			if (clock != null && !clock.stop(System.nanoTime())) {
+				// the move came in after the flag fell, before its timer ran
+				timedOut = whiteTurn ? Mark.W : Mark.B;
+				next = null;
+			} else {
+				whiteTurn = !whiteTurn;
+				turnChanged.signalAll();
+				next = whiteTurn ? white : black;
+				startClock();
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (next == null) {
+			if (timedOut != null) {
+				close();
+			}
+		} else {
+			next.turnStarted();
+		}
+	}
+
+	/**
+	 * Gives the players of this session the provided clocks, on which the time of
+	 * every turn is kept, starting with the turn of the player whose turn it is:
+	 * right away if the game has started, otherwise once start() is called. The
+	 * flag of a player is watched by a timer on the provided wheel, which closes
+	 * the session when it falls.
+	 */
+	public void startClock(GameClock clock, TimerWheel timers) {
+		lock.lock();
+		try {
+			this.clock = clock;
+			this.timers = timers;
+			startClock();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts the clock of the player whose turn it is, and sets a timer for when
+	 * its flag falls. Called with the lock held.
+	 */
+	private void startClock() {
+		if (clock == null || !started || closed) {
+			return;
+		}
+		clock.start(whiteTurn ? Mark.W : Mark.B, System.nanoTime());
+		setFlag();
+	}
+
+	/**
+	 * Sets the timer for when the flag of the player whose clock is running
+	 * falls, instead of the timer set before. Called with the lock held.
+	 */
+	private void setFlag() {
+		if (flag != null) {
+			flag.cancel();
+		}
+		long left = clock.timeLeft(System.nanoTime());
+		flag = timers.schedule(this::checkFlag, TimeUnit.NANOSECONDS.toMillis(left) + 1);
+	}
+
+	/**
+	 * Run by the timer wheel when the flag of the player whose clock is running
+	 * should have fallen. If the player has not moved, the game is over and the
+	 * session is closed.
+	 */
+	private void checkFlag() {
+		lock.lock();
+		try {
+			if (closed || clock == null || clock.getRunning() == null) {
+				return;
+			}
+			if (clock.timeLeft(System.nanoTime()) > 0) {
+				// this timer was set for an earlier turn
+				setFlag();
+				return;
+			}
+			timedOut = clock.getRunning();
+		} finally {
+			lock.unlock();
+		}
+		close();
+	}
+
+	/**
+	 * Returns true if the game has started and it is the turn of the player with
+	 * the provided mark.
+	 */
+	public boolean isTurn(Mark mark) {
+		lock.lock();
+		try {
+			return started && whiteTurn == (mark == Mark.W);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Blocks (without using any CPU) until the game has started and it is the turn
+	 * of the player with the provided mark, or the session is closed. Returns true
+	 * if it is the turn of the player, false if the session has been closed.
+	 *
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 */
+	public boolean awaitTurn(Mark mark) throws InterruptedException {
+		lock.lock();
+		try {
+			while (!closed && (!started || whiteTurn != (mark == Mark.W))) {
+				turnChanged.await();
+			}
+			return !closed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Ends this session, waking up a player that is waiting for its turn and
+	 * telling both clients. Closing a session a second time does nothing.
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			turnChanged.signalAll();
+			if (flag != null) {
+				flag.cancel();
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (black != null) {
+			black.sessionClosed();
+		}
+		if (white != null) {
+			white.sessionClosed();
+		}
+	}
+
+	/**
+	 * Returns true if this session has been closed.
+	 */
+	public boolean isClosed() {
+		lock.lock();
+		try {
+			return closed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the player whose flag has fallen, which ended the game, or null if
+	 * no flag has fallen.
+	 */
+	public Mark getTimedOut() {
+		return timedOut;
+	}
+
+	/**
+	 * Getter method for the clocks of the players, null if the game has no time
+	 * limit.
+	 */
+	public GameClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Getter method for the number of this session.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Getter method for the board of this session.
+	 */
+	public GoBoard getBoard() {
+		return board;
+	}
+
+	/**
+	 * Getter method for the last move made in this game (-1 at the start and after
+	 * a pass).
+	 */
+	public int getLastMove() {
+		return lastMove;
+	}
+
+	/**
+	 * Returns the number of intersections whose stones were taken off the board by
+	 * the last move.
+	 */
+	public int getCapturedCount() {
+		return capturedCount;
+	}
+
+	/**
+	 * Returns the k-th intersection whose stone was taken off the board by the
+	 * last move.
+	 */
+	public int getCaptured(int k) {
+		return captured[k];
+	}
+
+	/**
+	 * Getter method for the amount of consecutive passes.
+	 */
+	public int getNoPasses() {
+		return noPasses;
+	}
+
+	/**
+	 * Returns the client of the player with the provided mark.
+	 */
+	public GameClient getPlayer(Mark mark) {
+		return mark == Mark.B ? black : white;
+	}
+
+	/**
+	 * Returns the client of the opponent of the provided client.
+	 */
+	public GameClient getOpponent(GameClient player) {
+		return player == black ? white : black;
+	}
+
+}
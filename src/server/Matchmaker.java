@@ -0,0 +1,165 @@
+package server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import exceptions.ProtocolException;
+import game.Mark;
+import protocol.ProtocolMessages;
+
+/**
+ * Pairs the clients that have finished their handshake into game sessions.
+ * Clients only play against clients that asked for the same board size, so
+ * there is a waiting slot per board size. A client that finds the slot empty
+ * takes it and waits; the next client for that size takes it over and starts
+ * a game with the one waiting. Slots are taken and emptied with a single
+ * compare-and-set, without a lock, so thousands of handshakes per second do
+ * not have to queue up behind each other. A preferred colour is given when
+ * possible, first to the client that waited longest.
+ */
+public class Matchmaker {
+
+	/**
+	 * The largest board size a client may ask for.
+	 */
+	public static final int MAX_BOARD_SIZE = 19;
+
+	/**
+	 * The server on which the sessions are started.
+	 */
+	private Server srv;
+
+	/**
+	 * The board size of clients that do not ask for one.
+	 */
+	private int defaultBoardSize;
+
+	/**
+	 * For every board size asked for, the client waiting for an opponent (or an
+	 * empty slot).
+	 */
+	private ConcurrentHashMap<Integer, AtomicReference<Ticket>> waiting = new ConcurrentHashMap<>();
+
+	/**
+	 * A waiting client together with the colour it prefers (null if it does not
+	 * care).
+	 */
+	private static class Ticket {
+		private final GameClient client;
+		private final Mark colour;
+
+		Ticket(GameClient client, Mark colour) {
+			this.client = client;
+			this.colour = colour;
+		}
+	}
+
+	/**
+	 * Creates a matchmaker that starts its sessions on the provided server.
+	 */
+	public Matchmaker(Server srv, int defaultBoardSize) {
+		this.srv = srv;
+		this.defaultBoardSize = defaultBoardSize;
+	}
+
+	/**
+	 * Reads the preferences of a client from its handshake (H;version;name, then
+	 * optionally the preferred colour B or W and the board size, either of which
+	 * may be left empty) and lets it wait for an opponent with the same board
+	 * size.
+	 *
+	 * @throws ProtocolException if the colour or the board size is not valid
+	 */
+	public void enqueue(GameClient client, String handshake) throws ProtocolException {
+		String[] msgSplit = handshake.split(ProtocolMessages.DELIMITER);
+		Mark colour = null;
+		if (msgSplit.length > 3 && msgSplit[3].length() == 1) {
+			if (msgSplit[3].charAt(0) == ProtocolMessages.BLACK) {
+				colour = Mark.B;
+			} else if (msgSplit[3].charAt(0) == ProtocolMessages.WHITE) {
+				colour = Mark.W;
+			}
+		}
+		int boardSize = defaultBoardSize;
+		if (msgSplit.length > 4 && !msgSplit[4].isEmpty()) {
+			try {
+				boardSize = Integer.parseInt(msgSplit[4]);
+			} catch (NumberFormatException e) {
+				throw new ProtocolException("Not a board size: " + msgSplit[4]);
+			}
+			if (boardSize < 1 || boardSize > MAX_BOARD_SIZE) {
+				throw new ProtocolException("Board size " + boardSize + " is not between 1 and " + MAX_BOARD_SIZE);
+			}
+		}
+		enqueue(client, boardSize, colour);
+	}
+
+	/**
+	 * Lets the client wait for an opponent on a board of the provided size, or, if
+	 * another client is already waiting for one, starts a new game between the two
+	 * of them.
+	 */
+	public void enqueue(GameClient client, int boardSize, Mark colour) {
+		AtomicReference<Ticket> slot = waiting.computeIfAbsent(boardSize, size -> new AtomicReference<>());
+		Ticket ticket = new Ticket(client, colour);
+		while (true) {
+			Ticket other = slot.get();
+			if (other == null) {
+				if (slot.compareAndSet(null, ticket)) {
+					return;
+				}
+			} else if (slot.compareAndSet(other, null)) {
+				pair(other, ticket, boardSize);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Takes the client out of its waiting slot, if it is still waiting. Gets
+	 * called when a client disconnects.
+	 */
+	public void cancel(GameClient client) {
+		for (AtomicReference<Ticket> slot : waiting.values()) {
+			Ticket ticket = slot.get();
+			if (ticket != null && ticket.client == client) {
+				slot.compareAndSet(ticket, null);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of clients waiting for an opponent.
+	 */
+	public int getWaitingCount() {
+		int count = 0;
+		for (AtomicReference<Ticket> slot : waiting.values()) {
+			if (slot.get() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Starts a game between the client that waited and the client that just came
+	 * in. The one that waited gets the colour it prefers; if it does not care, the
+	 * newcomer does; if neither cares, the one that waited plays black.
+	 */
+	private void pair(Ticket first, Ticket second, int boardSize) {
+		boolean firstBlack;
+		if (first.colour != null) {
+			firstBlack = first.colour == Mark.B;
+		} else if (second.colour != null) {
+			firstBlack = second.colour == Mark.W;
+		} else {
+			firstBlack = true;
+		}
+		if (firstBlack) {
+			srv.startSession(first.client, second.client, boardSize);
+		} else {
+			srv.startSession(second.client, first.client, boardSize);
+		}
+	}
+
+}
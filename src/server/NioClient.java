@@ -0,0 +1,489 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import exceptions.ExitProgram;
+import exceptions.ProtocolException;
+import game.Mark;
+import protocol.BinaryProtocol;
+import protocol.ProtocolMessages;
+
+/**
+ * One client of the NioTransport. Does what a ClientHandler does, but instead
+ * of blocking a thread of its own it is called by its event loop whenever
+ * there is something to read or room to write. It cuts the bytes it reads into
+ * lines (the messages of the protocol) itself, and keeps one direct buffer for
+ * reading and one for writing for as long as it is connected.
+ */
+public class NioClient implements GameClient {
+
+	/**
+	 * The size (in bytes) of the read and write buffers. A message that does not
+	 * fit in the read buffer is not a message of the protocol.
+	 */
+	private static final int BUFFER_SIZE = 1024;
+
+	/**
+	 * A buffer per thread in which frames are written before they are queued, so
+	 * that a frame costs just the byte array that holds it.
+	 */
+	private static final ThreadLocal<ByteBuffer> FRAMES = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocate(BinaryProtocol.MAX_FRAME));
+
+	/**
+	 * The server, the channel to the client and the event loop serving it.
+	 */
+	private Server srv;
+	private SocketChannel channel;
+	private NioTransport.EventLoop loop;
+	private SelectionKey key;
+
+	/**
+	 * The bytes read but not handled yet, and the bytes waiting to be written.
+	 */
+	private ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/**
+	 * Messages (lines or frames) waiting to be copied into the write buffer,
+	 * filled by any thread (the opponent's event loop too), and the bytes of the
+	 * message being copied.
+	 */
+	private Queue<byte[]> outgoing = new ConcurrentLinkedQueue<>();
+	private byte[] current;
+	private int currentPos;
+
+	/**
+	 * Name of this client.
+	 */
+	private String name;
+
+	/**
+	 * Mark (colour) of the player of this client.
+	 */
+	private volatile Mark mark;
+
+	/**
+	 * The game this client plays in, null until an opponent has been found.
+	 */
+	private volatile GameSession session;
+
+	/**
+	 * Set to true once the client has sent its handshake.
+	 */
+	private boolean handshakeDone;
+
+	/**
+	 * Set to true if the client asked for the delta extension in its handshake.
+	 */
+	private volatile boolean delta;
+
+	/**
+	 * Set to true if the client asked for the binary extension in its handshake,
+	 * after which it sends and gets frames instead of lines.
+	 */
+	private volatile boolean binary;
+
+	/**
+	 * Set to true if the client asked for the batch extension, after which the
+	 * result of its move is queued without waking up the event loop, so that it
+	 * is written together with its next turn, or for the stream extension, after
+	 * which the result is not sent at all.
+	 */
+	private boolean batch;
+	private boolean stream;
+
+	/**
+	 * Set to true when the connection should be closed once the messages still
+	 * waiting have been written, and set to true once it has been closed.
+	 */
+	private volatile boolean closing;
+	private volatile boolean closed;
+
+	/**
+	 * Constructs a new NioClient for the provided (non-blocking) channel, served
+	 * by the provided event loop.
+	 */
+	public NioClient(SocketChannel channel, Server srv, NioTransport.EventLoop loop, String name) {
+		this.channel = channel;
+		this.srv = srv;
+		this.loop = loop;
+		this.name = name;
+	}
+
+	/**
+	 * Registers the channel with the selector of the event loop, to be told when
+	 * there is something to read. Called by the event loop.
+	 */
+	void register(Selector selector) {
+		try {
+			key = channel.register(selector, SelectionKey.OP_READ, this);
+		} catch (ClosedChannelException e) {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Reads what the client has sent and handles every complete line, or every
+	 * complete frame once the client uses the binary protocol. Frames are handled
+	 * right in the read buffer. Called by the event loop.
+	 */
+	void read() {
+		try {
+			if (channel.read(in) == -1) {
+				// the client has closed the connection
+				shutdown();
+				return;
+			}
+			in.flip();
+			while (!closed) {
+				if (binary) {
+					int length = BinaryProtocol.frameLength(in);
+					if (length == -1) {
+						break;
+					}
+					int end = in.position() + length;
+					int limit = in.limit();
+					in.limit(end);
+					handleFrame(in);
+					in.limit(limit);
+					in.position(end);
+				} else {
+					int newline = -1;
+					for (int i = in.position(); i < in.limit() && newline == -1; i++) {
+						if (in.get(i) == '\n') {
+							newline = i;
+						}
+					}
+					if (newline == -1) {
+						break;
+					}
+					byte[] line = new byte[newline - in.position()];
+					in.get(line);
+					in.get();
+					handleLine(new String(line, StandardCharsets.US_ASCII).trim());
+				}
+			}
+			in.compact();
+			if (!in.hasRemaining()) {
+				throw new ProtocolException("Message too long");
+			}
+		} catch (ProtocolException | NumberFormatException | ExitProgram e) {
+			srv.log.warn("{} did not adhere to the protocol, disconnect {}", name, name);
+			shutdown();
+		} catch (IOException e) {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Handles one message of the client: first the handshake, after which the
+	 * client waits for an opponent, then a move whenever it is the turn of this
+	 * client. The move is done through the game session, which tells the opponent
+	 * it is its turn. Before its move, the client may ask for the whole board.
+	 *
+	 * @throws ProtocolException if the message is not what is expected now
+	 * @throws ExitProgram       if the move is not legal
+	 */
+	private void handleLine(String msg) throws ProtocolException, ExitProgram {
+		srv.log.debug(game(), "> [{}] Incoming: {}", name, msg);
+		if (!handshakeDone) {
+			if (msg.isEmpty() || msg.charAt(0) != ProtocolMessages.HANDSHAKE) {
+				throw new ProtocolException("No handshake received from " + name);
+			}
+			handshakeDone = true;
+			delta = ServerMessages.asksFor(msg, ProtocolMessages.DELTA);
+			binary = ServerMessages.asksFor(msg, ProtocolMessages.BINARY);
+			batch = ServerMessages.asksFor(msg, ProtocolMessages.BATCH);
+			stream = ServerMessages.asksFor(msg, ProtocolMessages.STREAM);
+			send(ServerMessages.handshake(ServerMessages.accept(msg)));
+			srv.getMatchmaker().enqueue(this, msg);
+			return;
+		}
+		checkTurn();
+		if (ServerMessages.isSync(msg)) {
+			sendBoard();
+			return;
+		}
+		doMove(ServerMessages.parseMove(msg));
+	}
+
+	/**
+	 * Handles one frame of the client, once it uses the binary protocol: the same
+	 * as handleLine, with the frame read right from the read buffer.
+	 *
+	 * @throws ProtocolException if the frame is not what is expected now
+	 * @throws ExitProgram       if the move is not legal
+	 */
+	private void handleFrame(ByteBuffer frame) throws ProtocolException, ExitProgram {
+		srv.log.debug(game(), "> [{}] Incoming frame: {}", name, BinaryProtocol.peekCommand(frame));
+		checkTurn();
+		if (ServerMessages.isSync(frame)) {
+			sendBoard();
+			return;
+		}
+		doMove(ServerMessages.getMove(frame));
+	}
+
+	/**
+	 * Checks that it is the turn of this client.
+	 *
+	 * @throws ProtocolException if it is not
+	 */
+	private void checkTurn() throws ProtocolException {
+		if (session == null || !session.isTurn(mark)) {
+			throw new ProtocolException(name + " sent a message while it was not its turn");
+		}
+	}
+
+	/**
+	 * Does the move of the client (-1 for a pass) through the game session,
+	 * answers it (unless the client uses the stream extension), and ends the
+	 * turn. With the batch extension the answer goes out with the next turn.
+	 *
+	 * @throws ExitProgram if the move is not legal
+	 */
+	private void doMove(int move) throws ExitProgram {
+		if (session.isClosed()) {
+			// the time of the client ran out before its move came in
+			return;
+		}
+		if (move == -1) {
+			session.doPass();
+		} else {
+			session.doMove(mark, move);
+		}
+		if (!stream) {
+			if (binary) {
+				ServerMessages.putResult(frame(), session, delta);
+				queueFrame();
+			} else {
+				queue(ServerMessages.result(session, delta));
+			}
+			if (!batch) {
+				loop.flush(this);
+			}
+		}
+		session.endTurn();
+	}
+
+	/**
+	 * Sends the client the whole board.
+	 */
+	private void sendBoard() {
+		if (binary) {
+			ServerMessages.putBoard(frame(), session);
+			sendFrame();
+		} else {
+			send(ServerMessages.board(session));
+		}
+	}
+
+	/**
+	 * Queues a message for the client and makes sure the event loop sends it. May
+	 * be called by any thread.
+	 */
+	private void send(String msg) {
+		queue(msg);
+		loop.flush(this);
+	}
+
+	/**
+	 * Queues a message for the client, to be sent with the next one that is sent.
+	 */
+	private void queue(String msg) {
+		srv.log.debug(game(), "Sending to {}: {}", name, msg);
+		outgoing.add((msg + "\n").getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Returns the (empty) buffer of the current thread to write a frame in.
+	 */
+	private static ByteBuffer frame() {
+		ByteBuffer frame = FRAMES.get();
+		frame.clear();
+		return frame;
+	}
+
+	/**
+	 * Queues the frame written in the buffer of the current thread for the
+	 * client and makes sure the event loop sends it, like send does with a line.
+	 */
+	private void sendFrame() {
+		queueFrame();
+		loop.flush(this);
+	}
+
+	/**
+	 * Queues the frame written in the buffer of the current thread for the
+	 * client, to be sent with the next one that is sent.
+	 */
+	private void queueFrame() {
+		ByteBuffer frame = FRAMES.get();
+		srv.log.debug(game(), "Sending to {}: frame of {} bytes", name, frame.position());
+		byte[] bytes = new byte[frame.position()];
+		frame.flip();
+		frame.get(bytes);
+		outgoing.add(bytes);
+	}
+
+	/**
+	 * Copies the waiting messages into the write buffer and writes as much of it
+	 * as the channel takes. If not everything could be written, the event loop is
+	 * asked to call this again when there is room. Called by the event loop.
+	 */
+	void flush() {
+		if (key == null || !key.isValid()) {
+			return;
+		}
+		try {
+			while (true) {
+				if (current == null) {
+					current = outgoing.poll();
+					if (current == null) {
+						break;
+					}
+					currentPos = 0;
+				}
+				int n = Math.min(out.remaining(), current.length - currentPos);
+				out.put(current, currentPos, n);
+				currentPos += n;
+				if (currentPos == current.length) {
+					current = null;
+				}
+				if (!out.hasRemaining()) {
+					out.flip();
+					channel.write(out);
+					out.compact();
+					if (!out.hasRemaining()) {
+						// the channel takes nothing more for now
+						break;
+					}
+				}
+			}
+			out.flip();
+			channel.write(out);
+			out.compact();
+			boolean pending = out.position() > 0 || current != null || !outgoing.isEmpty();
+			if (pending) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			} else if (closing) {
+				shutdown();
+			} else {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		} catch (IOException e) {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Tells the client it is its turn, together with the last move of the
+	 * opponent (P after a pass or at the start) and the board, or what the move
+	 * captured.
+	 */
+	public void turnStarted() {
+		if (binary) {
+			ServerMessages.putTurn(frame(), session, delta);
+			sendFrame();
+		} else {
+			send(ServerMessages.turn(session, delta));
+		}
+	}
+
+	/**
+	 * Closes the connection once the messages still waiting have been sent, after
+	 * telling the client the game is over if a flag has fallen.
+	 */
+	public void sessionClosed() {
+		if (session.getTimedOut() != null && !closed) {
+			if (binary) {
+				ServerMessages.putEnd(frame());
+				queueFrame();
+			} else {
+				queue(ServerMessages.end());
+			}
+		}
+		closing = true;
+		loop.flush(this);
+	}
+
+	/**
+	 * Closes the channel and removes this client from the server, and its game
+	 * session if it has one. Called by the event loop.
+	 */
+	private void shutdown() {
+		closed = true;
+		srv.log.info("> [{}] Shutting down.", name);
+		if (key != null) {
+			key.cancel();
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			srv.log.warn("> [{}] Error while closing: {}", name, e.getMessage());
+		}
+		srv.removeClient(this);
+		if (session != null) {
+			srv.endSession(session);
+		}
+	}
+
+	/**
+	 * Returns the number of the game this client plays in, or -1 while it is
+	 * waiting for an opponent, for the log.
+	 */
+	private int game() {
+		GameSession current = session;
+		return current == null ? -1 : current.getId();
+	}
+
+	/**
+	 * Getter method for the name of this client.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Setter method for the colour of this client.
+	 */
+	public void setMark(Mark mark) {
+		this.mark = mark;
+	}
+
+	/**
+	 * Getter method for the colour of this client.
+	 */
+	public Mark getMark() {
+		return mark;
+	}
+
+	/**
+	 * Setter method for the game session this client plays in. Sends the client
+	 * that the game starts; that it is its turn is sent once the session starts.
+	 * If the client has already left, the session is ended right away.
+	 */
+	public void setSession(GameSession session) {
+		this.session = session;
+		if (closed) {
+			srv.endSession(session);
+			return;
+		}
+		if (binary) {
+			ServerMessages.putStart(frame(), session, mark);
+			sendFrame();
+		} else {
+			send(ServerMessages.start(session, mark));
+		}
+	}
+
+}
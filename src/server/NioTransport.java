@@ -0,0 +1,175 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Serves the clients of a Server with non-blocking channels instead of a
+ * thread per client: the thread calling serve() accepts new connections and
+ * hands them out in turn to a small number of event loops, each of which uses
+ * one Selector to read from and write to all of its clients. A client that is
+ * waiting for its opponent costs nothing but an NioClient and its two buffers,
+ * so one server can hold many thousands of mostly idle connections.
+ */
+public class NioTransport {
+
+	/**
+	 * The server whose clients are served.
+	 */
+	private Server srv;
+
+	/**
+	 * The channel on which new connections are accepted.
+	 */
+	private ServerSocketChannel channel;
+
+	/**
+	 * The event loops, one per processor.
+	 */
+	private EventLoop[] loops;
+
+	/**
+	 * Opens the server channel on the provided port and starts the event loops.
+	 *
+	 * @throws IOException if the port cannot be opened
+	 */
+	public NioTransport(Server srv, int port) throws IOException {
+		this.srv = srv;
+		channel = ServerSocketChannel.open();
+		channel.bind(new InetSocketAddress(port), Server.BACKLOG);
+		loops = new EventLoop[Runtime.getRuntime().availableProcessors()];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new EventLoop(srv.log);
+			Thread thread = new Thread(loops[i], "nio-loop-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Accepts new connections until the server channel is closed, handing every
+	 * new client to the next event loop.
+	 *
+	 * @throws IOException if accepting a connection fails
+	 */
+	public void serve() throws IOException {
+		int next = 0;
+		while (true) {
+			SocketChannel sock = channel.accept();
+			sock.configureBlocking(false);
+			// send every message right away (see Server.run())
+			sock.socket().setTcpNoDelay(true);
+			EventLoop loop = loops[next];
+			next = (next + 1) % loops.length;
+			NioClient client = new NioClient(sock, srv, loop, srv.nextClientName());
+			srv.addClient(client);
+			loop.register(client);
+		}
+	}
+
+	/**
+	 * One event loop: a thread that waits on a Selector for any of its clients to
+	 * have something to read or room to write, and handles it.
+	 */
+	static class EventLoop implements Runnable {
+
+		/**
+		 * The selector of this loop.
+		 */
+		private Selector selector;
+
+		/**
+		 * The log of the server, for errors of this loop.
+		 */
+		private ServerLog log;
+
+		/**
+		 * The thread running this loop.
+		 */
+		private Thread thread;
+
+		/**
+		 * New clients to register with the selector, and clients that have messages
+		 * waiting to be sent. Both are filled by other threads and emptied by this
+		 * loop, which is woken up for it.
+		 */
+		private Queue<NioClient> newClients = new ConcurrentLinkedQueue<>();
+		private Queue<NioClient> flushes = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * Creates a new event loop with a selector of its own, which reports its
+		 * errors to the provided log.
+		 *
+		 * @throws IOException if the selector cannot be opened
+		 */
+		EventLoop(ServerLog log) throws IOException {
+			this.log = log;
+			selector = Selector.open();
+		}
+
+		/**
+		 * Hands a new client to this loop.
+		 */
+		void register(NioClient client) {
+			newClients.add(client);
+			selector.wakeup();
+		}
+
+		/**
+		 * Makes sure the messages waiting for the provided client of this loop are
+		 * sent: right away when called by the loop itself, otherwise by waking up the
+		 * loop.
+		 */
+		void flush(NioClient client) {
+			if (Thread.currentThread() == thread) {
+				client.flush();
+			} else {
+				flushes.add(client);
+				selector.wakeup();
+			}
+		}
+
+		/**
+		 * Waits for something to do and does it, until the thread is stopped.
+		 */
+		public void run() {
+			thread = Thread.currentThread();
+			while (true) {
+				try {
+					selector.select();
+				} catch (IOException e) {
+					log.warn("IO error in event loop: {}", e.getMessage());
+					return;
+				}
+				NioClient client;
+				while ((client = newClients.poll()) != null) {
+					client.register(selector);
+				}
+				while ((client = flushes.poll()) != null) {
+					client.flush();
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					client = (NioClient) key.attachment();
+					if (key.isValid() && key.isReadable()) {
+						client.read();
+					}
+					if (key.isValid() && key.isWritable()) {
+						client.flush();
+					}
+				}
+			}
+		}
+
+	}
+
+}
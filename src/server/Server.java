@@ -3,11 +3,14 @@ package server;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import exceptions.ExitProgram;
-import game.Board;
 import game.Mark;
 
 /**
@@ -15,15 +18,53 @@ import game.Mark;
  */
 public class Server implements Runnable {
 
+	/**
+	 * Name of the system property that selects the threads the ClientHandlers run
+	 * on: "platform" (default) or "virtual". Virtual threads need Java 21 or newer;
+	 * on an older Java the server falls back to platform threads.
+	 */
+	public static final String THREADS_PROPERTY = "go.threads";
+
+	/**
+	 * Name of the system property that selects how the server talks to its
+	 * clients: "socket" (default) for a ClientHandler with a thread of its own per
+	 * client, or "nio" for a few event loops that serve every client (see
+	 * NioTransport).
+	 */
+	public static final String TRANSPORT_PROPERTY = "go.transport";
+
+	/**
+	 * Names of the system properties with the time control of every game: the
+	 * main time of each player in seconds, and then the number of periods of
+	 * byo-yomi of the provided number of seconds (default 30). The main time and
+	 * the periods are 0 by default, which turns the clocks off.
+	 */
+	public static final String MAIN_TIME_PROPERTY = "go.time.main";
+	public static final String PERIODS_PROPERTY = "go.time.periods";
+	public static final String PERIOD_TIME_PROPERTY = "go.time.period";
+
+	/**
+	 * The number of connections that may wait to be accepted, so a storm of
+	 * connecting clients is not turned away.
+	 */
+	public static final int BACKLOG = 1024;
+
 	/**
 	 * The ServerSocket of this Server.
 	 */
 	private ServerSocket ssock;
 
 	/**
-	 * List of ClientHandlers, one for each connected client.
+	 * The event loops serving the clients when the nio transport is used, null
+	 * otherwise.
 	 */
-	private List<ClientHandler> clients;
+	private NioTransport transport;
+
+	/**
+	 * The connected clients. A concurrent set, so clients can come and go from
+	 * many threads at once.
+	 */
+	private Set<GameClient> clients;
 
 	/**
 	 * Next client number, increasing for every new connection.
@@ -35,6 +76,31 @@ public class Server implements Runnable {
 	 */
 	public ServerTUI view;
 
+	/**
+	 * The log of this server, which prints the messages about clients and games
+	 * without holding them up.
+	 */
+	public ServerLog log;
+
+	/**
+	 * The wheel that runs the timers of the clocks of all games, ticking every
+	 * 100 milliseconds.
+	 */
+	private TimerWheel timers;
+
+	/**
+	 * The time control of every game: the main time and the length of a period
+	 * of byo-yomi in milliseconds, and the number of periods.
+	 */
+	private long mainTime;
+	private long periodTime;
+	private int periods;
+
+	/**
+	 * Runs the ClientHandlers, one task per connected client.
+	 */
+	private ExecutorService handlers;
+
 	/**
 	 * The size of the board (number of horizontal/vertical intersections)of the
 	 * games being played on this server.
@@ -42,24 +108,74 @@ public class Server implements Runnable {
 	private int boardSize;
 
 	/**
-	 * The board of the game that is being played on this server. TODO change to
-	 * List of Boards, such that multiple games can be played on this server.
+	 * The games being played on this server, by the number of their session.
 	 */
-	private Board board;
+	private Map<Integer, GameSession> sessions;
 
 	/**
-	 * Constructs a new Server. Initialises the clients list, the games list, the
-	 * view and the next_client_no.
+	 * Number of the next session that is started.
+	 */
+	private AtomicInteger nextSessionNo;
+
+	/**
+	 * Pairs the clients that have finished their handshake into sessions.
+	 */
+	private Matchmaker matchmaker;
+
+	/**
+	 * Constructs a new Server. Initialises the clients set, the sessions registry,
+	 * the view and the next_client_no.
 	 */
 	public Server() {
-		clients = new ArrayList<>();
+		clients = ConcurrentHashMap.newKeySet();
+		nextSessionNo = new AtomicInteger();
+		sessions = new ConcurrentHashMap<>();
 		view = new ServerTUI();
+		log = ServerLog.fromProperties(System.out);
+		log.start();
+		timers = new TimerWheel(100, 512, log);
+		timers.start();
+		mainTime = Long.getLong(MAIN_TIME_PROPERTY, 0) * 1000;
+		periods = Integer.getInteger(PERIODS_PROPERTY, 0);
+		periodTime = Long.getLong(PERIOD_TIME_PROPERTY, 30) * 1000;
 		nextClientNo = 0;
+		handlers = newHandlerExecutor();
+	}
+
+	/**
+	 * Constructs a new Server for games on a board of the provided size, which is
+	 * then not asked for in setup(). Useful for tests.
+	 */
+	public Server(int boardSize) {
+		this();
+		this.boardSize = boardSize;
+		this.matchmaker = new Matchmaker(this, boardSize);
+	}
+
+	/**
+	 * Returns an executor that starts a new virtual thread for every ClientHandler
+	 * if the go.threads system property asks for it and this Java supports it, or
+	 * one that runs every ClientHandler on a platform thread otherwise. A
+	 * ClientHandler spends most of a game blocked in readLine(), which costs a
+	 * virtual thread only a small object on the heap instead of a whole stack.
+	 * Executors.newVirtualThreadPerTaskExecutor() is looked up by reflection, so
+	 * the server still compiles and runs on Java 11.
+	 */
+	static ExecutorService newHandlerExecutor() {
+		if ("virtual".equals(System.getProperty(THREADS_PROPERTY))) {
+			try {
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				System.out.println("Virtual threads need Java 21 or newer, using platform threads instead.");
+			}
+		}
+		return Executors.newCachedThreadPool();
 	}
 
 	/**
 	 * Opens a new socket by calling setup() and starts a new ClientHandler for
-	 * every connecting client.
+	 * every connecting client, or lets the NioTransport serve the clients if the
+	 * nio transport has been asked for.
 	 * 
 	 * If setup() throws a ExitProgram exception, stop the program. In case of any
 	 * other errors, ask the user whether the setup should be ran again to open a
@@ -70,36 +186,18 @@ public class Server implements Runnable {
 		while (openNewSocket) {
 			try {
 				setup();
-				boolean secondPlayer = true;
+				if (transport != null) {
+					transport.serve();
+				}
 				while (true) {
-					secondPlayer = !secondPlayer;
-					nextClientNo++;
 					Socket sock = ssock.accept();
-					String clientName = "Player " + String.format("%02d", nextClientNo);
-					view.showMessage("New player [" + clientName + "] connected!");
-					ClientHandler handler = new ClientHandler(sock, this, clientName);
-					new Thread(handler).start();
-					clients.add(handler);
-
-					// TODO check clients list for two connected clients that are not yet in a game
-					if (secondPlayer) {
-						view.showMessage(clients.get(nextClientNo - 2).getName() + " and "
-								+ clients.get(nextClientNo - 1).getName() + " will play against each other!");
-						// two players have connected, start a new Game!
-						this.board = new Board(this.boardSize, false);
-						// give the ClientHandlers a colour, first player is always black
-						clients.get(nextClientNo - 2).setMark(Mark.B);
-						clients.get(nextClientNo - 1).setMark(Mark.W);
-						// the first move should be black's, let the ClientHandler's know this
-						// only one needs to be told this, since it's a static variable
-						clients.get(nextClientNo - 2).setWhiteTurn(false);
-						clients.get(nextClientNo - 2).setLastMove(-1);
-						clients.get(nextClientNo - 2).setNoPasses(0);
-						// wake up the ClientHandlers that will play in the new game
-						// by setting the volatile boolean twoPlayer value to true
-						clients.get(nextClientNo - 2).setTwoPlayers(true);
-						clients.get(nextClientNo - 1).setTwoPlayers(true);
-					}
+					// send every message right away instead of holding it back until the
+					// previous one has been acknowledged (Nagle's algorithm)
+					sock.setTcpNoDelay(true);
+					ClientHandler handler = new ClientHandler(sock, this, nextClientName());
+					addClient(handler);
+					// the handler asks the matchmaker for an opponent after the handshake
+					handlers.execute(handler);
 				}
 
 			} catch (ExitProgram ep) {
@@ -112,10 +210,21 @@ public class Server implements Runnable {
 				}
 			}
 		}
+		close();
 		view.showMessage("See you later!");
 
 	}
 
+	/**
+	 * Stops the threads of the timers and the log, after printing the messages
+	 * still in the log. Called when the server stops, or by a test that is done
+	 * with the server.
+	 */
+	public void close() {
+		timers.close();
+		log.close();
+	}
+
 	/**
 	 * Opens a new ServerSocket at local host [on a user-defined port].
 	 * 
@@ -125,19 +234,27 @@ public class Server implements Runnable {
 	 * ExitProgram exception is thrown or a new port is entered.
 	 */
 	public void setup() throws ExitProgram {
-		boardSize = view.getInt(
-				"What should be the board size for the games played on this Server? By board size we mean the amount of intersections in one dimension.");
+		if (boardSize <= 0) {
+			boardSize = view.getInt(
+					"What should be the board size for the games played on this Server? By board size we mean the amount of intersections in one dimension.");
+		}
 
 		view.showMessage("The board size is: " + boardSize + " x " + boardSize + ", let's see who wants to play!");
+		matchmaker = new Matchmaker(this, boardSize);
 
 		ssock = null;
-		while (ssock == null) {
+		transport = null;
+		while (ssock == null && transport == null) {
 			// int port = view.getInt("Please enter the server port.");
 			int port = 8888;
 
 			try {
 				view.showMessage("Attempting to open a socket at 127.0.0.1 " + "on port " + port + "...");
-				ssock = new ServerSocket(port);// , 0, InetAddress.getByName("127.0.0.1"));
+				if ("nio".equals(System.getProperty(TRANSPORT_PROPERTY))) {
+					transport = new NioTransport(this, port);
+				} else {
+					ssock = new ServerSocket(port, BACKLOG);// , 0, InetAddress.getByName("127.0.0.1"));
+				}
 				view.showMessage("Server started at port " + port + ".");
 			} catch (IOException e) {
 				view.showMessage("ERROR: could not create a socket on 127.0.0.1 and port " + port + ".");
@@ -149,39 +266,89 @@ public class Server implements Runnable {
 	}
 
 	/**
-	 * Removes a clientHandler from the client list. Gets called in the shutdown()
-	 * method of ClientHandler
+	 * Gives the next client that connects its name, and tells so.
+	 */
+	String nextClientName() {
+		nextClientNo++;
+		String clientName = "Player " + String.format("%02d", nextClientNo);
+		log.info("New player [{}] connected!", clientName);
+		return clientName;
+	}
+
+	/**
+	 * Adds a newly connected client to the client list.
 	 */
-	public void removeClient(ClientHandler client) {
+	void addClient(GameClient client) {
+		clients.add(client);
+	}
+
+	/**
+	 * Removes a client from the client list. Gets called in the shutdown() method
+	 * of ClientHandler and when an NioClient is closed.
+	 */
+	public void removeClient(GameClient client) {
 		this.clients.remove(client);
+		matchmaker.cancel(client);
 	}
 
 	/**
-	 * Called by a ClientHandler when the player it represents wants to do this
-	 * move; does the provided move on the board.
-	 * 
-	 * @throws ExitProgram
+	 * Getter method for the matchmaker, which the clients ask for an opponent once
+	 * they have finished their handshake.
+	 */
+	public Matchmaker getMatchmaker() {
+		return matchmaker;
+	}
+
+	/**
+	 * Starts a new game on a board of the provided size between the two provided
+	 * players: registers a new session for them, gives them their colour and hands
+	 * them the session, which tells both clients the game starts. Only then is the
+	 * session started, which gives black its first turn and starts its clock (if
+	 * the games have a time control). Called by the matchmaker.
+	 */
+	public GameSession startSession(GameClient black, GameClient white, int boardSize) {
+		GameSession session = new GameSession(nextSessionNo.getAndIncrement(), boardSize, black, white);
+		sessions.put(session.getId(), session);
+		log.info("{} and {} will play against each other in game {}!", black.getName(), white.getName(),
+				session.getId());
+		black.setMark(Mark.B);
+		white.setMark(Mark.W);
+		black.setSession(session);
+		white.setSession(session);
+		if (mainTime > 0 || periods > 0) {
+			session.startClock(new GameClock(mainTime, periodTime, periods), timers);
+		}
+		session.start();
+		return session;
+	}
+
+	/**
+	 * Removes a session from the registry, once its game is over or one of its
+	 * players has left. Gets called when a client is shut down.
 	 */
-	public synchronized void doMove(Mark mark, int move) throws ExitProgram {
-		board.putStone(move % this.boardSize, move / this.boardSize, mark);
+	public void endSession(GameSession session) {
+		sessions.remove(session.getId());
+		session.close();
 	}
 
 	/**
-	 * Called by a ClientHandler when the player it represents passes.
+	 * Returns the session with the provided number, or null if there is no such
+	 * game (anymore).
 	 */
-	public synchronized String doPass(String cmd) {
-		return "doPass Method";
+	public GameSession getSession(int id) {
+		return sessions.get(id);
 	}
 
 	/**
-	 * Getter method for the board of the game being played on this server.
+	 * Returns the number of games being played on this server.
 	 */
-	public Board getBoard() {
-		return board;
+	public int getSessionCount() {
+		return sessions.size();
 	}
 
 	/**
-	 * Getter method for the board size of the games being played on this server.
+	 * Getter method for the board size of the games played on this server by
+	 * clients that do not ask for another size.
 	 */
 	public int getBoardSize() {
 		return boardSize;
@@ -0,0 +1,338 @@
+package server;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The log of the server. Handlers hand their messages to the log without
+ * waiting for them to be printed: a message is put in a ring of fixed size and
+ * printed later by one writer thread, so a slow console never holds up a move.
+ * If the ring is full, the message is dropped and counted instead.
+ *
+ * A message is a pattern with {} for each of at most three arguments, which is
+ * only turned into text by the writer thread, and only if the message is
+ * logged at all. Messages below the level of the log are ignored right away,
+ * messages about moves (DEBUG) can be limited to one game in every N, and the
+ * writer prints at most a certain number of lines per second.
+ */
+public class ServerLog implements Runnable {
+
+	/**
+	 * The levels of messages: DEBUG for every message to and from a client, INFO
+	 * for clients and games that come and go, WARN for things that went wrong.
+	 * OFF logs nothing.
+	 */
+	public enum Level {
+		DEBUG, INFO, WARN, OFF
+	}
+
+	/**
+	 * Name of the system property with the lowest level that is logged: "debug",
+	 * "info" (default), "warn" or "off".
+	 */
+	public static final String LEVEL_PROPERTY = "go.log";
+
+	/**
+	 * Name of the system property with N, to log the DEBUG messages of only one
+	 * game in every N (default 1: every game).
+	 */
+	public static final String SAMPLE_PROPERTY = "go.log.sample";
+
+	/**
+	 * Name of the system property with the largest number of lines printed per
+	 * second (default 1000). Messages over that are dropped and counted.
+	 */
+	public static final String RATE_PROPERTY = "go.log.rate";
+
+	/**
+	 * The number of messages the ring holds; a power of two.
+	 */
+	private static final int CAPACITY = 4096;
+
+	/**
+	 * One place in the ring. The fields are filled in by the thread that claimed
+	 * the place, after which it sets the sequence number, which tells the writer
+	 * the message is there.
+	 */
+	private static class Entry {
+		private volatile long sequence = -1;
+		private String pattern;
+		private Object arg1;
+		private Object arg2;
+		private Object arg3;
+	}
+
+	/**
+	 * The ring of messages, with the sequence number of the next place to claim
+	 * (tail) and of the next message to print (head, only moved by the writer).
+	 */
+	private final Entry[] ring = new Entry[CAPACITY];
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head;
+
+	/**
+	 * The number of messages dropped since the last time that was reported.
+	 */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Where the messages are printed.
+	 */
+	private final PrintStream out;
+
+	/**
+	 * The lowest level logged, the N of one game in every N, and the largest
+	 * number of lines per second.
+	 */
+	private final Level level;
+	private final int sample;
+	private final int rate;
+
+	/**
+	 * The writer thread, and whether it is parked because the ring is empty.
+	 */
+	private volatile Thread writer;
+	private volatile boolean sleeping;
+
+	/**
+	 * Set to true by close(), after which the writer prints what is left and
+	 * stops.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Creates a log that prints to the provided stream. start() has to be called
+	 * before anything is printed.
+	 */
+	public ServerLog(PrintStream out, Level level, int sample, int rate) {
+		this.out = out;
+		this.level = level;
+		this.sample = Math.max(1, sample);
+		this.rate = Math.max(1, rate);
+		for (int i = 0; i < CAPACITY; i++) {
+			ring[i] = new Entry();
+		}
+	}
+
+	/**
+	 * Creates a log that prints to the provided stream, with the level, sampling
+	 * and rate from the system properties.
+	 */
+	public static ServerLog fromProperties(PrintStream out) {
+		Level level = Level.INFO;
+		String name = System.getProperty(LEVEL_PROPERTY);
+		if (name != null) {
+			try {
+				level = Level.valueOf(name.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				out.println("Unknown log level " + name + ", using " + level);
+			}
+		}
+		return new ServerLog(out, level, Integer.getInteger(SAMPLE_PROPERTY, 1),
+				Integer.getInteger(RATE_PROPERTY, 1000));
+	}
+
+	/**
+	 * Starts the writer thread.
+	 */
+	public void start() {
+		Thread thread = new Thread(this, "server-log");
+		thread.setDaemon(true);
+		writer = thread;
+		thread.start();
+	}
+
+	/**
+	 * Prints the messages that are still waiting and stops the writer thread.
+	 */
+	public void close() {
+		closed = true;
+		Thread thread = writer;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a message of the provided level about the provided game (-1
+	 * if it is not about a game) would be logged.
+	 */
+	public boolean isLogged(Level level, int game) {
+		if (level.ordinal() < this.level.ordinal() || level == Level.OFF) {
+			return false;
+		}
+		return level != Level.DEBUG || game < 0 || game % sample == 0;
+	}
+
+	/**
+	 * Logs a DEBUG message without arguments about the provided game (-1 if it
+	 * is not about a game).
+	 */
+	public void debug(int game, String pattern) {
+		log(Level.DEBUG, game, pattern, null, null, null);
+	}
+
+	/**
+	 * Logs a DEBUG message with one argument about the provided game (-1 if it is
+	 * not about a game).
+	 */
+	public void debug(int game, String pattern, Object arg1) {
+		log(Level.DEBUG, game, pattern, arg1, null, null);
+	}
+
+	/**
+	 * Logs a DEBUG message with two arguments about the provided game (-1 if it
+	 * is not about a game).
+	 */
+	public void debug(int game, String pattern, Object arg1, Object arg2) {
+		log(Level.DEBUG, game, pattern, arg1, arg2, null);
+	}
+
+	/**
+	 * Logs an INFO message without arguments.
+	 */
+	public void info(String pattern) {
+		log(Level.INFO, -1, pattern, null, null, null);
+	}
+
+	/**
+	 * Logs an INFO message with one argument.
+	 */
+	public void info(String pattern, Object arg1) {
+		log(Level.INFO, -1, pattern, arg1, null, null);
+	}
+
+	/**
+	 * Logs an INFO message with two arguments.
+	 */
+	public void info(String pattern, Object arg1, Object arg2) {
+		log(Level.INFO, -1, pattern, arg1, arg2, null);
+	}
+
+	/**
+	 * Logs an INFO message with three arguments.
+	 */
+	public void info(String pattern, Object arg1, Object arg2, Object arg3) {
+		log(Level.INFO, -1, pattern, arg1, arg2, arg3);
+	}
+
+	/**
+	 * Logs a WARN message without arguments.
+	 */
+	public void warn(String pattern) {
+		log(Level.WARN, -1, pattern, null, null, null);
+	}
+
+	/**
+	 * Logs a WARN message with one argument.
+	 */
+	public void warn(String pattern, Object arg1) {
+		log(Level.WARN, -1, pattern, arg1, null, null);
+	}
+
+	/**
+	 * Logs a WARN message with two arguments.
+	 */
+	public void warn(String pattern, Object arg1, Object arg2) {
+		log(Level.WARN, -1, pattern, arg1, arg2, null);
+	}
+
+	/**
+	 * Puts a message in the ring, to be printed by the writer thread, if it is
+	 * logged at all. Never waits: if the ring is full, the message is dropped.
+	 */
+	public void log(Level level, int game, String pattern, Object arg1, Object arg2, Object arg3) {
+		if (!isLogged(level, game)) {
+			return;
+		}
+		long sequence;
+		do {
+			sequence = tail.get();
+			if (sequence - head >= CAPACITY) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (!tail.compareAndSet(sequence, sequence + 1));
+		Entry entry = ring[(int) sequence & (CAPACITY - 1)];
+		entry.pattern = pattern;
+		entry.arg1 = arg1;
+		entry.arg2 = arg2;
+		entry.arg3 = arg3;
+		entry.sequence = sequence;
+		if (sleeping) {
+			LockSupport.unpark(writer);
+		}
+	}
+
+	/**
+	 * Prints the messages in the ring as they come in, at most rate lines per
+	 * second, until the log is closed.
+	 */
+	public void run() {
+		StringBuilder line = new StringBuilder();
+		long second = System.nanoTime();
+		int printed = 0;
+		while (true) {
+			Entry entry = ring[(int) head & (CAPACITY - 1)];
+			if (entry.sequence != head) {
+				if (closed) {
+					break;
+				}
+				// nothing to print, so wait until a message is put in the ring
+				sleeping = true;
+				if (ring[(int) head & (CAPACITY - 1)].sequence != head && !closed) {
+					LockSupport.park(this);
+				}
+				sleeping = false;
+				continue;
+			}
+			long now = System.nanoTime();
+			if (now - second >= 1_000_000_000L) {
+				second = now;
+				printed = 0;
+				long lost = dropped.getAndSet(0);
+				if (lost > 0) {
+					out.println("(" + lost + " log messages dropped)");
+				}
+			}
+			if (printed < rate) {
+				line.setLength(0);
+				format(line, entry.pattern, entry.arg1, entry.arg2, entry.arg3);
+				out.println(line);
+				printed++;
+			} else {
+				dropped.incrementAndGet();
+			}
+			entry.pattern = null;
+			entry.arg1 = null;
+			entry.arg2 = null;
+			entry.arg3 = null;
+			head++;
+		}
+		out.flush();
+	}
+
+	/**
+	 * Appends the pattern to the line with each {} replaced by the next argument.
+	 */
+	static void format(StringBuilder line, String pattern, Object arg1, Object arg2, Object arg3) {
+		int arg = 0;
+		int from = 0;
+		int at = pattern.indexOf("{}");
+		while (at >= 0) {
+			line.append(pattern, from, at);
+			line.append(arg == 0 ? arg1 : arg == 1 ? arg2 : arg3);
+			arg++;
+			from = at + 2;
+			at = arg < 3 ? pattern.indexOf("{}", from) : -1;
+		}
+		line.append(pattern, from, pattern.length());
+	}
+
+}
@@ -0,0 +1,307 @@
+package server;
+
+import java.nio.ByteBuffer;
+
+import exceptions.ProtocolException;
+import game.Mark;
+import protocol.BinaryProtocol;
+import protocol.ProtocolMessages;
+
+/**
+ * Builds the messages the server sends to its clients, so that ClientHandler
+ * and NioClient send exactly the same protocol. A client that asked for the
+ * delta extension gets the move and the captured intersections in TURN and
+ * RESULT messages instead of the whole board. A client that asked for the
+ * binary extension gets the same messages as frames (see BinaryProtocol),
+ * which are written straight into a buffer instead of being built as a String.
+ */
+public final class ServerMessages {
+
+	/**
+	 * The version of the protocol and the welcome message sent in the handshake.
+	 */
+	public static final String VERSION = "1.0";
+	public static final String WELCOME = "Welcome to this server that will let you play Go!";
+
+	/**
+	 * The extensions of the protocol this server supports.
+	 */
+	private static final String[] EXTENSIONS = { ProtocolMessages.DELTA, ProtocolMessages.BINARY,
+		ProtocolMessages.BATCH, ProtocolMessages.STREAM };
+
+	/**
+	 * Only static methods, no instances.
+	 */
+	private ServerMessages() {
+	}
+
+	/**
+	 * Returns true if the client asked for the provided extension in its handshake
+	 * (in the list in the sixth field).
+	 */
+	public static boolean asksFor(String handshake, String extension) {
+		String[] msgSplit = handshake.split(ProtocolMessages.DELIMITER);
+		if (msgSplit.length > 5) {
+			for (String asked : msgSplit[5].split(ProtocolMessages.LIST_DELIMITER)) {
+				if (asked.equals(extension)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the extensions the client asked for in its handshake that this
+	 * server supports, separated by commas (empty if there are none).
+	 */
+	public static String accept(String handshake) {
+		StringBuilder accepted = new StringBuilder();
+		for (String extension : EXTENSIONS) {
+			if (asksFor(handshake, extension)) {
+				if (accepted.length() > 0) {
+					accepted.append(ProtocolMessages.LIST_DELIMITER);
+				}
+				accepted.append(extension);
+			}
+		}
+		return accepted.toString();
+	}
+
+	/**
+	 * The reply to the handshake of a client: the version, the welcome message and
+	 * the extensions that will be used for this client (if any), as returned by
+	 * accept.
+	 */
+	public static String handshake(String accepted) {
+		String msg = ProtocolMessages.HANDSHAKE + ProtocolMessages.DELIMITER + VERSION + ProtocolMessages.DELIMITER
+				+ WELCOME;
+		if (!accepted.isEmpty()) {
+			msg += ProtocolMessages.DELIMITER + accepted;
+		}
+		return msg;
+	}
+
+	/**
+	 * The message that the game starts, with the (empty) board, from which the
+	 * client learns the board size, and the colour of the client.
+	 */
+	public static String start(GameSession session, Mark mark) {
+		return ProtocolMessages.GAME + ProtocolMessages.DELIMITER + session.getBoard().toString()
+				+ ProtocolMessages.DELIMITER + mark;
+	}
+
+	/**
+	 * The message that it is the turn of the client: with the board and the last
+	 * move of the opponent, or, with the delta extension, the last move and the
+	 * intersections it captured.
+	 */
+	public static String turn(GameSession session, boolean delta) {
+		StringBuilder msg = new StringBuilder().append(ProtocolMessages.TURN).append(ProtocolMessages.DELIMITER);
+		if (delta) {
+			appendMove(msg, session.getLastMove());
+			appendCaptured(msg.append(ProtocolMessages.DELIMITER), session);
+		} else {
+			msg.append(session.getBoard().toString()).append(ProtocolMessages.DELIMITER);
+			appendMove(msg, session.getLastMove());
+		}
+		return msg.toString();
+	}
+
+	/**
+	 * The reply to a valid move of the client: with the board, or, with the delta
+	 * extension, the move and the intersections it captured.
+	 */
+	public static String result(GameSession session, boolean delta) {
+		StringBuilder msg = new StringBuilder().append(ProtocolMessages.RESULT).append(ProtocolMessages.DELIMITER)
+				.append(ProtocolMessages.VALID).append(ProtocolMessages.DELIMITER);
+		if (delta) {
+			appendMove(msg, session.getLastMove());
+			appendCaptured(msg.append(ProtocolMessages.DELIMITER), session);
+		} else {
+			msg.append(session.getBoard().toString());
+		}
+		return msg.toString();
+	}
+
+	/**
+	 * The reply to a SYNC request: the whole board.
+	 */
+	public static String board(GameSession session) {
+		return ProtocolMessages.SYNC + ProtocolMessages.DELIMITER + session.getBoard().toString();
+	}
+
+	/**
+	 * The message that the game is over because a player has been disconnected,
+	 * which is also sent when the flag of a player has fallen.
+	 */
+	public static String end() {
+		return ProtocolMessages.END + ProtocolMessages.DELIMITER + ProtocolMessages.DISCONNECT;
+	}
+
+	/**
+	 * Returns true if the message of the client is a request for the whole board.
+	 */
+	public static boolean isSync(String msg) {
+		return msg.length() == 1 && msg.charAt(0) == ProtocolMessages.SYNC;
+	}
+
+	/**
+	 * Reads the move out of a MOVE message of the protocol: the intersection, or -1
+	 * if the client passes.
+	 *
+	 * @throws ProtocolException if the message is not a MOVE message with an
+	 *                           intersection or a pass
+	 */
+	public static int parseMove(String msg) throws ProtocolException {
+		// apparently, the received message does not correspond to the protocol
+		if (msg.isEmpty() || msg.charAt(0) != ProtocolMessages.MOVE) {
+			throw new ProtocolException("You did not send me a valid command!");
+		}
+		String[] msgSplit = msg.split(ProtocolMessages.DELIMITER);
+		if (msgSplit.length > 1 && isNumber(msgSplit[1])) {
+			return Integer.parseInt(msgSplit[1]);
+		} else if (msgSplit.length > 1 && msgSplit[1].contentEquals(String.valueOf(ProtocolMessages.PASS))) {
+			return -1;
+		}
+		throw new ProtocolException("You did not send me a move!");
+	}
+
+	/**
+	 * Writes the frame that the game starts: the colour of the client and the
+	 * (empty) board.
+	 */
+	public static void putStart(ByteBuffer buf, GameSession session, Mark mark) {
+		int start = BinaryProtocol.beginFrame(buf, ProtocolMessages.GAME);
+		buf.put((byte) (mark == Mark.B ? ProtocolMessages.BLACK : ProtocolMessages.WHITE));
+		BinaryProtocol.putBoard(buf, session.getBoard());
+		BinaryProtocol.endFrame(buf, start);
+	}
+
+	/**
+	 * Writes the frame that it is the turn of the client, with the same arguments
+	 * as turn().
+	 */
+	public static void putTurn(ByteBuffer buf, GameSession session, boolean delta) {
+		int start = BinaryProtocol.beginFrame(buf, ProtocolMessages.TURN);
+		if (delta) {
+			BinaryProtocol.putMove(buf, session.getLastMove());
+			putCaptured(buf, session);
+		} else {
+			BinaryProtocol.putBoard(buf, session.getBoard());
+			BinaryProtocol.putMove(buf, session.getLastMove());
+		}
+		BinaryProtocol.endFrame(buf, start);
+	}
+
+	/**
+	 * Writes the frame with the reply to a valid move of the client, with the same
+	 * arguments as result().
+	 */
+	public static void putResult(ByteBuffer buf, GameSession session, boolean delta) {
+		int start = BinaryProtocol.beginFrame(buf, ProtocolMessages.RESULT);
+		buf.put((byte) ProtocolMessages.VALID);
+		if (delta) {
+			BinaryProtocol.putMove(buf, session.getLastMove());
+			putCaptured(buf, session);
+		} else {
+			BinaryProtocol.putBoard(buf, session.getBoard());
+		}
+		BinaryProtocol.endFrame(buf, start);
+	}
+
+	/**
+	 * Writes the frame with the reply to a SYNC request: the whole board.
+	 */
+	public static void putBoard(ByteBuffer buf, GameSession session) {
+		int start = BinaryProtocol.beginFrame(buf, ProtocolMessages.SYNC);
+		BinaryProtocol.putBoard(buf, session.getBoard());
+		BinaryProtocol.endFrame(buf, start);
+	}
+
+	/**
+	 * Writes the frame that the game is over, with the same argument as end().
+	 */
+	public static void putEnd(ByteBuffer buf) {
+		int start = BinaryProtocol.beginFrame(buf, ProtocolMessages.END);
+		buf.put((byte) ProtocolMessages.DISCONNECT);
+		BinaryProtocol.endFrame(buf, start);
+	}
+
+	/**
+	 * Returns true if the frame of the client at the position of the buffer is a
+	 * request for the whole board.
+	 */
+	public static boolean isSync(ByteBuffer frame) {
+		return BinaryProtocol.peekCommand(frame) == ProtocolMessages.SYNC;
+	}
+
+	/**
+	 * Reads the move out of a MOVE frame of the client: the intersection, or -1 if
+	 * the client passes.
+	 *
+	 * @throws ProtocolException if the frame is not a MOVE frame with a move
+	 */
+	public static int getMove(ByteBuffer frame) throws ProtocolException {
+		if (BinaryProtocol.getCommand(frame) != ProtocolMessages.MOVE) {
+			throw new ProtocolException("You did not send me a valid command!");
+		}
+		int move = BinaryProtocol.getMove(frame);
+		if (move < -1) {
+			throw new ProtocolException("You did not send me a move!");
+		}
+		return move;
+	}
+
+	/**
+	 * Appends a move: the intersection, or P for a pass.
+	 */
+	private static void appendMove(StringBuilder msg, int move) {
+		if (move == -1) {
+			msg.append(ProtocolMessages.PASS);
+		} else {
+			msg.append(move);
+		}
+	}
+
+	/**
+	 * Appends the intersections captured by the last move, separated by commas.
+	 */
+	private static void appendCaptured(StringBuilder msg, GameSession session) {
+		int count = session.getCapturedCount();
+		for (int k = 0; k < count; k++) {
+			if (k > 0) {
+				msg.append(ProtocolMessages.LIST_DELIMITER);
+			}
+			msg.append(session.getCaptured(k));
+		}
+	}
+
+	/**
+	 * Writes the number of intersections captured by the last move, followed by
+	 * the intersections.
+	 */
+	private static void putCaptured(ByteBuffer buf, GameSession session) {
+		int count = session.getCapturedCount();
+		BinaryProtocol.putVarint(buf, count);
+		for (int k = 0; k < count; k++) {
+			BinaryProtocol.putVarint(buf, session.getCaptured(k));
+		}
+	}
+
+	/**
+	 * Checks whether the provided String consists of (decimal) digits only.
+	 */
+	private static boolean isNumber(String s) {
+		if (s.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (Character.digit(s.charAt(i), 10) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
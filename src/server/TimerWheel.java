@@ -0,0 +1,291 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks after a delay, for every game on the server with one thread. The
+ * time is cut into ticks, and the tasks are kept in a wheel of lists, one per
+ * tick: a task that is due in t ticks goes into list t modulo the size of the
+ * wheel, with the number of turns of the wheel it still has to wait. Every tick
+ * the thread only looks at the list of that tick, so scheduling and cancelling a
+ * task costs the same however many tasks are waiting, which matters when every
+ * move of thousands of games schedules one.
+ *
+ * A task runs at most one tick late, never early. It runs on the thread of the
+ * wheel, so it should not block.
+ */
+public class TimerWheel implements Runnable {
+
+	/**
+	 * A task waiting in the wheel, which can be cancelled.
+	 */
+	public static final class Timeout {
+
+		/**
+		 * The states of a timeout: waiting, cancelled or run.
+		 */
+		private static final int WAITING = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+
+		/**
+		 * The task to run and when to run it (System.nanoTime()).
+		 */
+		private final Runnable task;
+		private final long deadline;
+
+		/**
+		 * The state of this timeout, changed with a compare-and-set, so a timeout is
+		 * either cancelled or run, never both.
+		 */
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+
+		/**
+		 * The wheel this timeout is in.
+		 */
+		private final TimerWheel wheel;
+
+		/**
+		 * The turns of the wheel this timeout still has to wait, and its neighbours
+		 * in the list of its tick. Only used by the thread of the wheel.
+		 */
+		private long rounds;
+		private int slot = -1;
+		private Timeout prev;
+		private Timeout next;
+
+		/**
+		 * Creates a timeout for the task at the provided deadline.
+		 */
+		private Timeout(TimerWheel wheel, Runnable task, long deadline) {
+			this.wheel = wheel;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels this timeout, so its task is not run. Returns false if it has
+		 * already run or has been cancelled before.
+		 */
+		public boolean cancel() {
+			if (!state.compareAndSet(WAITING, CANCELLED)) {
+				return false;
+			}
+			// taken out of its list by the thread of the wheel
+			wheel.cancelled.add(this);
+			return true;
+		}
+
+		/**
+		 * Returns true if this timeout has been cancelled.
+		 */
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+	}
+
+	/**
+	 * The time of one tick and the number of lists (a power of two) in the wheel.
+	 */
+	private final long tickNanos;
+	private final int mask;
+
+	/**
+	 * The first timeout in the list of every tick. Only used by the thread of the
+	 * wheel; other threads hand their timeouts over through added and cancelled.
+	 */
+	private final Timeout[] wheel;
+
+	/**
+	 * Timeouts scheduled or cancelled since the last tick.
+	 */
+	private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * When the wheel was created, and the number of the next tick.
+	 */
+	private final long startTime;
+	private long tick;
+
+	/**
+	 * The thread of the wheel, and whether close() has been called.
+	 */
+	private volatile Thread worker;
+	private volatile boolean closed;
+
+	/**
+	 * The log that tasks that fail are reported to, null if there is none.
+	 */
+	private final ServerLog log;
+
+	/**
+	 * Creates a wheel with the provided time per tick and number of ticks per
+	 * turn, which is rounded up to a power of two. A task that fails is handed to
+	 * the uncaught exception handler of the thread of the wheel.
+	 */
+	public TimerWheel(long tickMillis, int ticksPerWheel) {
+		this(tickMillis, ticksPerWheel, null);
+	}
+
+	/**
+	 * Creates a wheel with the provided time per tick and number of ticks per
+	 * turn, which is rounded up to a power of two. A task that fails is reported
+	 * to the provided log.
+	 */
+	public TimerWheel(long tickMillis, int ticksPerWheel, ServerLog log) {
+		this.log = log;
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+		int size = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+		this.wheel = new Timeout[size];
+		this.mask = size - 1;
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Starts the thread of the wheel.
+	 */
+	public void start() {
+		Thread thread = new Thread(this, "timer-wheel");
+		thread.setDaemon(true);
+		worker = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stops the thread of the wheel. Tasks still waiting are not run.
+	 */
+	public void close() {
+		closed = true;
+		Thread thread = worker;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Runs the task once the provided number of milliseconds has passed, unless the
+	 * returned timeout is cancelled before that. May be called by any thread.
+	 */
+	public Timeout schedule(Runnable task, long delayMillis) {
+		Timeout timeout = new Timeout(this, task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+		added.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Waits for every tick and runs the tasks that are due, until the wheel is
+	 * closed.
+	 */
+	public void run() {
+		while (!closed) {
+			long tickEnd = startTime + (tick + 1) * tickNanos;
+			long now = System.nanoTime();
+			if (now < tickEnd) {
+				LockSupport.parkNanos(this, tickEnd - now);
+				continue;
+			}
+			removeCancelled();
+			addScheduled();
+			expire(wheel[(int) (tick & mask)]);
+			tick++;
+		}
+	}
+
+	/**
+	 * Takes the cancelled timeouts out of their lists.
+	 */
+	private void removeCancelled() {
+		Timeout timeout;
+		while ((timeout = cancelled.poll()) != null) {
+			if (timeout.slot >= 0) {
+				unlink(timeout);
+			}
+		}
+	}
+
+	/**
+	 * Puts the newly scheduled timeouts in the list of the tick they are due in.
+	 */
+	private void addScheduled() {
+		Timeout timeout;
+		while ((timeout = added.poll()) != null) {
+			if (timeout.isCancelled()) {
+				continue;
+			}
+			// the first tick that ends at or after the deadline, but not one that has
+			// passed already
+			long due = Math.max(tick, (timeout.deadline - startTime + tickNanos - 1) / tickNanos - 1);
+			timeout.rounds = (due - tick) / wheel.length;
+			timeout.slot = (int) (due & mask);
+			timeout.prev = null;
+			timeout.next = wheel[timeout.slot];
+			if (timeout.next != null) {
+				timeout.next.prev = timeout;
+			}
+			wheel[timeout.slot] = timeout;
+		}
+	}
+
+	/**
+	 * Runs the tasks in the list of the current tick that are due this turn of
+	 * the wheel, and counts down the turns of the others.
+	 */
+	private void expire(Timeout timeout) {
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			if (timeout.rounds > 0) {
+				timeout.rounds--;
+			} else {
+				unlink(timeout);
+				if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+					try {
+						timeout.task.run();
+					} catch (RuntimeException e) {
+						failed(e);
+					}
+				}
+			}
+			timeout = next;
+		}
+	}
+
+	/**
+	 * Reports a task that threw an exception, so the wheel keeps running.
+	 */
+	private void failed(RuntimeException e) {
+		if (log != null) {
+			log.warn("Error in timer task: {}", e);
+		} else {
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+		}
+	}
+
+	/**
+	 * Takes a timeout out of its list.
+	 */
+	private void unlink(Timeout timeout) {
+		if (timeout.prev != null) {
+			timeout.prev.next = timeout.next;
+		} else {
+			wheel[timeout.slot] = timeout.next;
+		}
+		if (timeout.next != null) {
+			timeout.next.prev = timeout.prev;
+		}
+		timeout.prev = null;
+		timeout.next = null;
+		timeout.slot = -1;
+	}
+
+}
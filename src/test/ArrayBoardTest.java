@@ -0,0 +1,493 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import exceptions.ExitProgram;
+import game.ArrayBoard;
+import game.BitBoard;
+import game.Board;
+import game.BoardListener;
+import game.BoardPool;
+import game.GoBoard;
+import game.Mark;
+
+class ArrayBoardTest {
+
+	/**
+	 * A board to test.
+	 */
+	private ArrayBoard board;
+
+	/**
+	 * To test whether an exception is thrown.
+	 */
+	boolean thrown;
+
+	/**
+	 * Creates a new 4x4 board.
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		board = new ArrayBoard(4, false);
+	}
+
+	/**
+	 * Tests whether placing a stone cannot be done on top of another stone until
+	 * that other stone has been removed.
+	 */
+	@Test
+	void testPlace() throws Exception {
+		board.putStone(0, 0, Mark.B);
+		try {
+			board.putStone(0, 0, Mark.W);
+		} catch (ExitProgram e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+		assertEquals(Mark.B, board.getMark(0));
+		board.removeStone(0, 0);
+		board.putStone(0, 0, Mark.W);
+		assertEquals(Mark.W, board.getMark(0));
+	}
+
+	/**
+	 * Tests whether chains are joined and their liberties counted correctly.
+	 */
+	@Test
+	void testJoinChains() throws Exception {
+		board.putStone(0, 0, Mark.B);
+		board.putStone(1, 0, Mark.B);
+		assertTrue(board.sameChain(0, 1));
+		assertEquals(3, board.getLiberties(0));
+		board.putStone(3, 0, Mark.B);
+		assertFalse(board.sameChain(0, 3));
+		board.putStone(2, 0, Mark.B);
+		board.putStone(2, 1, Mark.B);
+		assertTrue(board.sameChain(0, 6));
+		assertEquals(4, board.getLiberties(0));
+	}
+
+	/**
+	 * Tests whether a stone joining a long chain and a short one makes one chain
+	 * of all of them, whichever chain it touches first, and whether taking the
+	 * stone back splits them again with the right sizes.
+	 */
+	@Test
+	void testJoinBySize() throws Exception {
+		for (int col = 0; col < 4; col++) {
+			assertTrue(board.play(col, Mark.B));
+		}
+		assertTrue(board.play(9, Mark.B));
+		assertTrue(board.play(13, Mark.B));
+		assertEquals(4, board.getChainSize(0));
+		assertEquals(2, board.getChainSize(9));
+		assertTrue(board.play(5, Mark.B));
+		for (int i : new int[] { 0, 1, 2, 3, 5, 9, 13 }) {
+			assertTrue(board.sameChain(0, i));
+			assertEquals(7, board.getChainSize(i));
+		}
+		assertEquals(7, board.getLiberties(0));
+		assertEquals(9, board.getPseudoLiberties(13));
+		assertTrue(board.undo());
+		assertFalse(board.sameChain(0, 9));
+		assertEquals(4, board.getChainSize(3));
+		assertEquals(2, board.getChainSize(13));
+		assertEquals(5, board.getPseudoLiberties(9));
+	}
+
+	/**
+	 * Tests whether capturing a stone next to two stones of a chain gives that
+	 * chain two pseudo-liberties back, while its real liberties go up by one.
+	 */
+	@Test
+	void testPseudoLibertiesAfterCapture() throws Exception {
+		board.putStone(0, 0, Mark.B);
+		board.putStone(1, 0, Mark.B);
+		board.putStone(1, 1, Mark.B);
+		board.putStone(0, 1, Mark.W);
+		assertEquals(3, board.getPseudoLiberties(0));
+		assertEquals(3, board.getLiberties(0));
+		board.putStone(0, 2, Mark.B);
+		assertEquals(Mark.U, board.getMark(4));
+		assertEquals(5, board.getPseudoLiberties(0));
+		assertEquals(4, board.getLiberties(0));
+		assertFalse(board.sameChain(0, 8));
+		assertEquals(3, board.getPseudoLiberties(8));
+	}
+
+	/**
+	 * Tests whether a chain whose last liberty is next to two of its stones is
+	 * only counted as captured once that liberty is taken, by the pseudo-liberty
+	 * count alone, and whether putStone then removes the whole chain.
+	 */
+	@Test
+	void testCapturedByCount() throws Exception {
+		board.addStone(0, 0, Mark.W);
+		board.addStone(0, 1, Mark.W);
+		board.addStone(1, 1, Mark.W);
+		board.addStone(0, 2, Mark.B);
+		board.addStone(1, 2, Mark.B);
+		board.addStone(2, 1, Mark.B);
+		assertFalse(board.isCaptured(0));
+		assertEquals(2, board.getPseudoLiberties(0));
+		assertEquals(1, board.getLiberties(0));
+		board.addStone(1, 0, Mark.B);
+		assertTrue(board.isCaptured(0));
+		assertTrue(board.isCaptured(5));
+		board.removeStone(1, 0);
+		assertFalse(board.isCaptured(0));
+		board.putStone(1, 0, Mark.B);
+		assertEquals(0, board.getCount(Mark.W));
+		assertEquals(3, board.getLiberties(1));
+	}
+
+	/**
+	 * Tests whether a chain falls apart again when the stone joining it is removed.
+	 */
+	@Test
+	void testRemoveSplitsChain() throws Exception {
+		board.putStone(0, 0, Mark.B);
+		board.putStone(1, 0, Mark.B);
+		board.putStone(2, 0, Mark.B);
+		board.removeStone(1, 0);
+		assertFalse(board.sameChain(0, 2));
+		assertEquals(2, board.getLiberties(0));
+		assertEquals(3, board.getLiberties(2));
+	}
+
+	/**
+	 * Tests whether a chain of stones at the edge of the board is removed when
+	 * captured, and whether the liberties of the capturing stones are updated.
+	 */
+	@Test
+	void testCapture() throws Exception {
+		board.putStone(0, 0, Mark.B);
+		board.putStone(0, 1, Mark.B);
+		board.putStone(1, 0, Mark.B);
+		board.putStone(2, 0, Mark.W);
+		board.putStone(1, 1, Mark.W);
+		board.putStone(0, 2, Mark.W);
+		assertEquals(Mark.U, board.getMark(0));
+		assertEquals(Mark.U, board.getMark(1));
+		assertEquals(Mark.U, board.getMark(4));
+		assertEquals(4, board.getLiberties(5));
+	}
+
+	/**
+	 * Tests whether a suicide removes the stone of the player who put it, which
+	 * recreates the previous board situation and thus violates the Ko-rule.
+	 */
+	@Test
+	void testSuicideKo() throws Exception {
+		board.putStone(0, 1, Mark.B);
+		board.putStone(1, 0, Mark.B);
+		try {
+			board.putStone(0, 0, Mark.W);
+		} catch (ExitProgram e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+		assertEquals(Mark.U, board.getMark(0));
+	}
+
+	/**
+	 * Tests whether the Ko-rule is upheld.
+	 */
+	@Test
+	void testKo() throws Exception {
+		board.putStone(0, 1, Mark.B);
+		board.removeStone(0, 1);
+		try {
+			board.putStone(0, 1, Mark.B);
+		} catch (ExitProgram e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+	}
+
+	/**
+	 * Tests whether the hash only depends on the board situation, and whether the
+	 * Ko-rule is upheld when full board situations are compared as well.
+	 */
+	@Test
+	void testHashKo() throws Exception {
+		board.setFullPositionCheck(true);
+		long empty = board.getHash();
+		board.putStone(0, 1, Mark.B);
+		assertNotEquals(empty, board.getHash());
+		board.removeStone(0, 1);
+		assertEquals(empty, board.getHash());
+		try {
+			board.putStone(0, 1, Mark.B);
+		} catch (ExitProgram e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+	}
+
+	/**
+	 * Tests whether isLegal agrees with putStone for occupied intersections,
+	 * suicides that recreate a previous board situation and captures, without
+	 * changing the board.
+	 */
+	@Test
+	void testIsLegal() throws Exception {
+		board.putStone(0, 1, Mark.B);
+		board.putStone(1, 0, Mark.B);
+		assertFalse(board.isLegal(1, Mark.W));
+		assertFalse(board.isLegal(16, Mark.W));
+		assertTrue(board.isLegal(-1, Mark.W));
+		long hash = board.getHash();
+		assertFalse(board.isLegal(0, Mark.W));
+		assertTrue(board.isLegal(0, Mark.B));
+		assertEquals(hash, board.getHash());
+		assertEquals(Mark.U, board.getMark(0));
+		board.putStone(2, 0, Mark.W);
+		board.putStone(1, 1, Mark.W);
+		board.putStone(0, 2, Mark.W);
+		assertTrue(board.isLegal(0, Mark.W));
+		board.putStone(0, 0, Mark.W);
+		assertEquals(Mark.U, board.getMark(1));
+	}
+
+	/**
+	 * Tests whether isLegal upholds the Ko-rule with the full check turned on, on
+	 * every kind of board: retaking a Ko and a suicide that recreates the previous
+	 * board situation are both illegal, and putStone agrees.
+	 */
+	@Test
+	void testIsLegalFullCheck() throws Exception {
+		ArrayBoard array = new ArrayBoard(4, false);
+		array.setFullPositionCheck(true);
+		Board objects = new Board(4, false);
+		objects.setFullPositionCheck(true);
+		BitBoard bits = new BitBoard(4, false);
+		bits.setFullPositionCheck(true);
+		for (GoBoard b : new GoBoard[] { array, objects, bits }) {
+			b.putStone(1, 0, Mark.B);
+			b.putStone(0, 1, Mark.B);
+			b.putStone(1, 2, Mark.B);
+			b.putStone(2, 0, Mark.W);
+			b.putStone(3, 1, Mark.W);
+			b.putStone(2, 2, Mark.W);
+			b.putStone(1, 1, Mark.W);
+			assertTrue(b.isLegal(b.coorToInt(2, 1), Mark.B));
+			b.putStone(2, 1, Mark.B);
+			assertEquals(Mark.U, b.getMark(b.coorToInt(1, 1)));
+			assertFalse(b.isLegal(b.coorToInt(1, 1), Mark.W));
+			assertFalse(b.isLegal(b.coorToInt(0, 0), Mark.W));
+			assertTrue(b.isLegal(b.coorToInt(3, 3), Mark.W));
+			thrown = false;
+			try {
+				b.putStone(1, 1, Mark.W);
+			} catch (ExitProgram e) {
+				thrown = true;
+			}
+			assertTrue(thrown);
+		}
+	}
+
+	/**
+	 * Tests whether a capturing move can be taken back, restoring the captured
+	 * stones, their chains and the Ko history.
+	 */
+	@Test
+	void testPlayUndo() throws Exception {
+		assertTrue(board.play(1, Mark.B));
+		assertTrue(board.play(4, Mark.B));
+		assertTrue(board.play(2, Mark.W));
+		assertTrue(board.play(5, Mark.W));
+		assertTrue(board.play(8, Mark.W));
+		String before = board.toString();
+		long hash = board.getHash();
+		assertTrue(board.play(0, Mark.W));
+		assertEquals(Mark.U, board.getMark(1));
+		assertEquals(Mark.U, board.getMark(4));
+		assertFalse(board.play(0, Mark.B));
+		assertTrue(board.undo());
+		assertEquals(before, board.toString());
+		assertEquals(hash, board.getHash());
+		assertEquals(1, board.getLiberties(1));
+		assertTrue(board.isLegal(0, Mark.W));
+		assertEquals(5, board.getUndoDepth());
+	}
+
+	/**
+	 * Tests whether a copy has the same board situation and Ko history as the
+	 * original, and does not change along with it.
+	 */
+	@Test
+	void testCopy() throws Exception {
+		board.putStone(0, 1, Mark.B);
+		board.putStone(1, 1, Mark.W);
+		ArrayBoard copy = board.clone();
+		assertEquals(board.toString(), copy.toString());
+		assertEquals(board.getHash(), copy.getHash());
+		board.putStone(3, 3, Mark.B);
+		assertEquals(Mark.U, copy.getMark(15));
+		copy.removeStone(0, 1);
+		assertFalse(copy.isLegal(4, Mark.B));
+		BoardPool pool = new BoardPool();
+		ArrayBoard scratch = pool.acquire(board);
+		assertEquals(board.toString(), scratch.toString());
+		pool.release(scratch);
+		assertSame(scratch, pool.acquire(copy));
+		assertEquals(copy.toString(), scratch.toString());
+	}
+
+	/**
+	 * Tests area scoring: B owns the first column and the area next to it, W owns
+	 * the third column and the area next to it.
+	 */
+	@Test
+	void testScore() throws Exception {
+		for (int row = 0; row < 4; row++) {
+			board.putStone(1, row, Mark.B);
+			board.putStone(2, row, Mark.W);
+		}
+		assertTrue(board.determineWinner());
+		board.putStone(3, 0, Mark.B);
+		assertFalse(board.gameOver());
+	}
+
+	/**
+	 * Tests whether the stone counts, the move count and the score estimate follow
+	 * captures and undo, and whether the move limit ends the game.
+	 */
+	@Test
+	void testCounts() throws Exception {
+		board.play(1, Mark.B);
+		board.play(2, Mark.W);
+		board.play(4, Mark.B);
+		board.play(5, Mark.W);
+		board.play(8, Mark.W);
+		board.play(0, Mark.W);
+		assertEquals(0, board.getCount(Mark.B));
+		assertEquals(4, board.getCount(Mark.W));
+		assertEquals(12, board.getCount(Mark.U));
+		assertEquals(-4.5, board.estimateScore(), 0);
+		board.undo();
+		assertEquals(2, board.getCount(Mark.B));
+		assertEquals(5, board.getMoveCount());
+		board.setMoveLimit(6);
+		assertFalse(board.gameOver());
+		board.play(-1, Mark.W);
+		assertTrue(board.gameOver());
+	}
+
+	/**
+	 * Tests whether the list of empty intersections follows moves, captures, undo
+	 * and copies.
+	 */
+	@Test
+	void testEmptyList() throws Exception {
+		assertEmptyList(board);
+		board.play(1, Mark.B);
+		board.play(4, Mark.B);
+		board.play(0, Mark.W);
+		assertEmptyList(board);
+		board.play(2, Mark.W);
+		board.play(5, Mark.W);
+		board.play(8, Mark.W);
+		board.play(0, Mark.W);
+		assertEmptyList(board);
+		board.undo();
+		board.undo();
+		assertEmptyList(board);
+		board.removeStone(1, 0);
+		board.putStone(3, 3, Mark.B);
+		assertEmptyList(board);
+		ArrayBoard copy = new ArrayBoard(4, false);
+		copy.play(15, Mark.W);
+		copy.copyFrom(board);
+		assertEmptyList(copy);
+	}
+
+	/**
+	 * Tests the eye test: in the corner no diagonal may belong to the opponent, in
+	 * the middle one may.
+	 */
+	@Test
+	void testEye() throws Exception {
+		board.addStone(1, 0, Mark.B);
+		board.addStone(0, 1, Mark.B);
+		assertTrue(board.isEye(0, Mark.B));
+		assertFalse(board.isEye(0, Mark.W));
+		board.addStone(1, 1, Mark.W);
+		assertFalse(board.isEye(0, Mark.B));
+		ArrayBoard middle = new ArrayBoard(4, false);
+		middle.addStone(1, 0, Mark.B);
+		middle.addStone(0, 1, Mark.B);
+		middle.addStone(2, 1, Mark.B);
+		middle.addStone(1, 2, Mark.B);
+		assertTrue(middle.isEye(5, Mark.B));
+		middle.addStone(0, 0, Mark.W);
+		assertTrue(middle.isEye(5, Mark.B));
+		middle.addStone(2, 2, Mark.W);
+		assertFalse(middle.isEye(5, Mark.B));
+	}
+
+	/**
+	 * Asserts that the empty list of the board holds exactly the empty
+	 * intersections.
+	 */
+	private static void assertEmptyList(ArrayBoard board) {
+		int points = board.getBoardSize() * board.getBoardSize();
+		boolean[] listed = new boolean[points];
+		for (int k = 0; k < board.getCount(Mark.U); k++) {
+			assertFalse(listed[board.getEmpty(k)]);
+			listed[board.getEmpty(k)] = true;
+		}
+		for (int i = 0; i < points; i++) {
+			assertEquals(board.getMark(i) == Mark.U, listed[i]);
+		}
+	}
+
+	/**
+	 * Tests whether a big empty area is counted without running out of stack.
+	 */
+	@Test
+	void testScoreLargeArea() throws Exception {
+		ArrayBoard big = new ArrayBoard(300, false);
+		big.putStone(150, 150, Mark.W);
+		big.countScore();
+		assertEquals(0.0, big.getBlackScore(), 0);
+		assertEquals(90000.5, big.getWhiteScore(), 0);
+	}
+
+	/**
+	 * Tests whether a subscribed listener is told about added and captured stones,
+	 * and is not told anything anymore after unsubscribing.
+	 */
+	@Test
+	void testListener() throws Exception {
+		StringBuilder events = new StringBuilder();
+		BoardListener listener = new BoardListener() {
+			@Override
+			public void stoneAdded(int col, int row, Mark mark) {
+				events.append("+" + mark + col + row);
+			}
+
+			@Override
+			public void stoneRemoved(int col, int row) {
+				events.append("-" + col + row);
+			}
+		};
+		board.addBoardListener(listener);
+		board.putStone(0, 0, Mark.B);
+		board.putStone(1, 0, Mark.W);
+		board.putStone(0, 1, Mark.W);
+		assertEquals("+B00+W10+W01-00", events.toString());
+		board.removeBoardListener(listener);
+		board.putStone(3, 3, Mark.B);
+		assertEquals("+B00+W10+W01-00", events.toString());
+	}
+
+}
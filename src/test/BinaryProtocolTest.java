@@ -0,0 +1,155 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import exceptions.ProtocolException;
+import game.GoBoard;
+import game.Mark;
+import protocol.BinaryProtocol;
+import protocol.ProtocolMessages;
+import server.GameSession;
+import server.ServerMessages;
+
+class BinaryProtocolTest {
+
+	/**
+	 * The buffer frames are written in and read from.
+	 */
+	private ByteBuffer buf;
+
+	/**
+	 * To test whether an exception is thrown.
+	 */
+	boolean thrown;
+
+	/**
+	 * Creates an empty buffer for one frame.
+	 */
+	@BeforeEach
+	void setUp() {
+		buf = ByteBuffer.allocate(BinaryProtocol.MAX_FRAME);
+	}
+
+	/**
+	 * Tests whether numbers and moves are read back as they were written, in as
+	 * few bytes as expected.
+	 */
+	@Test
+	void testVarint() throws Exception {
+		int[] values = { 0, 1, 127, 128, 360, 16383, 16384, Integer.MAX_VALUE };
+		for (int value : values) {
+			BinaryProtocol.putVarint(buf, value);
+		}
+		BinaryProtocol.putMove(buf, -1);
+		BinaryProtocol.putMove(buf, 360);
+		assertEquals(1 + 1 + 1 + 2 + 2 + 2 + 3 + 5 + 1 + 2, buf.position());
+		buf.flip();
+		for (int value : values) {
+			assertEquals(value, BinaryProtocol.getVarint(buf));
+		}
+		assertEquals(-1, BinaryProtocol.getMove(buf));
+		assertEquals(360, BinaryProtocol.getMove(buf));
+		assertFalse(buf.hasRemaining());
+	}
+
+	/**
+	 * Tests whether a board is packed in 2 bits per intersection and read back.
+	 */
+	@Test
+	void testBoard() throws Exception {
+		GoBoard board = GoBoard.newBoard(5, false);
+		board.addStone(0, 0, Mark.B);
+		board.addStone(3, 0, Mark.W);
+		board.addStone(4, 4, Mark.W);
+		BinaryProtocol.putBoard(buf, board);
+		assertEquals(1 + BinaryProtocol.packedLength(5), buf.position());
+		assertEquals(7, BinaryProtocol.packedLength(5));
+		buf.flip();
+		assertEquals(5, BinaryProtocol.getBoardSize(buf));
+		for (int i = 0; i < 25; i++) {
+			assertEquals(board.getMark(i), BinaryProtocol.getMark(buf, 1, i));
+		}
+		board.close();
+	}
+
+	/**
+	 * Tests whether a frame is only read once it is complete, and whether a frame
+	 * of a wrong length is refused.
+	 */
+	@Test
+	void testFrame() throws Exception {
+		int start = BinaryProtocol.beginFrame(buf, ProtocolMessages.MOVE);
+		BinaryProtocol.putMove(buf, 200);
+		BinaryProtocol.endFrame(buf, start);
+		assertEquals(5, buf.position());
+		buf.flip();
+		buf.limit(4);
+		assertEquals(-1, BinaryProtocol.frameLength(buf));
+		buf.limit(5);
+		assertEquals(5, BinaryProtocol.frameLength(buf));
+		assertFalse(ServerMessages.isSync(buf));
+		assertEquals(200, ServerMessages.getMove(buf));
+
+		buf.clear();
+		buf.putShort((short) BinaryProtocol.MAX_FRAME);
+		buf.flip();
+		try {
+			BinaryProtocol.frameLength(buf);
+		} catch (ProtocolException e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+	}
+
+	/**
+	 * Tests whether the frames of the server carry the same as the text messages,
+	 * with the delta extension too.
+	 */
+	@Test
+	void testServerFrames() throws Exception {
+		GameSession session = new GameSession(0, 4, null, null);
+		session.doMove(Mark.B, 1);
+		session.endTurn();
+		session.doMove(Mark.W, 0);
+		session.endTurn();
+		// black captures the white stone in the corner
+		session.doMove(Mark.B, 4);
+		session.endTurn();
+
+		ServerMessages.putTurn(buf, session, true);
+		buf.flip();
+		assertEquals(buf.limit(), BinaryProtocol.frameLength(buf));
+		assertEquals(ProtocolMessages.TURN, BinaryProtocol.getCommand(buf));
+		assertEquals(4, BinaryProtocol.getMove(buf));
+		assertEquals(1, BinaryProtocol.getVarint(buf));
+		assertEquals(0, BinaryProtocol.getVarint(buf));
+		assertFalse(buf.hasRemaining());
+
+		buf.clear();
+		ServerMessages.putTurn(buf, session, false);
+		buf.flip();
+		assertEquals(ProtocolMessages.TURN, BinaryProtocol.getCommand(buf));
+		int boardStart = buf.position();
+		assertEquals(4, BinaryProtocol.getBoardSize(buf));
+		assertEquals(Mark.U, BinaryProtocol.getMark(buf, boardStart + 1, 0));
+		assertEquals(Mark.B, BinaryProtocol.getMark(buf, boardStart + 1, 1));
+		assertEquals(Mark.B, BinaryProtocol.getMark(buf, boardStart + 1, 4));
+		buf.position(boardStart + 1 + BinaryProtocol.packedLength(4));
+		assertEquals(4, BinaryProtocol.getMove(buf));
+		assertFalse(buf.hasRemaining());
+
+		buf.clear();
+		ServerMessages.putResult(buf, session, true);
+		buf.flip();
+		assertEquals(ProtocolMessages.RESULT, BinaryProtocol.getCommand(buf));
+		assertEquals(ProtocolMessages.VALID, BinaryProtocol.getChar(buf));
+	}
+
+}
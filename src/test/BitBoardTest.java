@@ -0,0 +1,90 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import exceptions.ExitProgram;
+import game.BitBoard;
+import game.Mark;
+
+class BitBoardTest {
+
+	/**
+	 * A board to test.
+	 */
+	private BitBoard board;
+
+	/**
+	 * To test whether an exception is thrown.
+	 */
+	boolean thrown;
+
+	/**
+	 * Creates a new 9x9 board, which takes two words per colour.
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		board = new BitBoard(9, false);
+	}
+
+	/**
+	 * Tests whether the liberties of a chain that crosses from the first word into
+	 * the second one are counted correctly.
+	 */
+	@Test
+	void testLibertiesAcrossWords() throws Exception {
+		board.putStone(0, 7, Mark.B);
+		board.putStone(0, 8, Mark.B);
+		board.putStone(1, 7, Mark.B);
+		assertEquals(4, board.getLiberties(board.coorToInt(0, 8)));
+		board.putStone(8, 6, Mark.W);
+		assertEquals(3, board.getLiberties(board.coorToInt(8, 6)));
+	}
+
+	/**
+	 * Tests whether a chain in the corner is captured, and whether the Ko-rule is
+	 * upheld when a suicide recreates the previous board situation.
+	 */
+	@Test
+	void testCaptureAndKo() throws Exception {
+		board.putStone(0, 0, Mark.B);
+		board.putStone(1, 0, Mark.B);
+		board.putStone(2, 0, Mark.W);
+		board.putStone(0, 1, Mark.W);
+		assertTrue(board.isLegal(board.coorToInt(1, 1), Mark.W));
+		board.putStone(1, 1, Mark.W);
+		assertEquals(Mark.U, board.getMark(0));
+		assertEquals(Mark.U, board.getMark(1));
+		board.putStone(8, 8, Mark.B);
+		board.putStone(7, 8, Mark.W);
+		board.putStone(8, 7, Mark.W);
+		assertFalse(board.isLegal(board.coorToInt(8, 8), Mark.B));
+		try {
+			board.putStone(8, 8, Mark.B);
+		} catch (ExitProgram e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+	}
+
+	/**
+	 * Tests area scoring: the first column of black claims the empty area left of
+	 * it, the rest of the board belongs to white.
+	 */
+	@Test
+	void testScore() throws Exception {
+		for (int row = 0; row < 9; row++) {
+			board.putStone(1, row, Mark.B);
+			board.putStone(2, row, Mark.W);
+		}
+		board.countScore();
+		assertEquals(18.0, board.getBlackScore(), 0);
+		assertEquals(63.5, board.getWhiteScore(), 0);
+		assertFalse(board.gameOver());
+	}
+
+}
@@ -1,6 +1,7 @@
 package test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -382,4 +383,25 @@ class BoardTest {
 		assertEquals(Mark.U, board.intersecs[3].getMark());
 	}
 
+	/**
+	 * Tests whether the game is only over once every intersection is occupied, and
+	 * whether captured stones are taken off the count again.
+	 */
+	@Test
+	void testGameOver() throws Exception {
+		assertFalse(board.gameOver());
+		for (int i = 0; i < 15; i++) {
+			board.putStone(i % 4, i / 4, Mark.B);
+		}
+		assertEquals(1, board.getCount(Mark.U));
+		assertFalse(board.gameOver());
+		board.addStone(3, 3, Mark.W);
+		assertTrue(board.gameOver());
+		board.removeStone(3, 3);
+		board.putStone(3, 3, Mark.W);
+		assertEquals(0, board.getCount(Mark.B));
+		assertEquals(15, board.getCount(Mark.U));
+		assertFalse(board.gameOver());
+	}
+
 }
@@ -0,0 +1,104 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import game.Mark;
+import server.GameClock;
+import server.TimerWheel;
+
+class GameClockTest {
+
+	/**
+	 * One millisecond, in the nanoseconds the clock is told the time in.
+	 */
+	private static final long MS = 1_000_000L;
+
+	/**
+	 * Clocks with 1 second of main time and 3 periods of 100 milliseconds.
+	 */
+	private GameClock clock;
+
+	/**
+	 * Creates the clocks.
+	 */
+	@BeforeEach
+	void setUp() {
+		clock = new GameClock(1000, 100, 3);
+	}
+
+	/**
+	 * Tests whether the time of a turn is taken off the main time, of the player
+	 * whose turn it was only.
+	 */
+	@Test
+	void testMainTime() {
+		clock.start(Mark.B, 0);
+		assertEquals(1300 * MS, clock.timeLeft(0));
+		assertEquals(900 * MS, clock.timeLeft(400 * MS));
+		assertTrue(clock.stop(400 * MS));
+		assertNull(clock.getRunning());
+		assertEquals(600, clock.getMainLeft(Mark.B));
+		assertEquals(1000, clock.getMainLeft(Mark.W));
+		assertEquals(3, clock.getPeriodsLeft(Mark.B));
+	}
+
+	/**
+	 * Tests whether a move in byo-yomi uses up a period for every whole period it
+	 * took, and whether the flag falls when none are left.
+	 */
+	@Test
+	void testByoYomi() {
+		clock.start(Mark.W, 0);
+		// 1 second of main time and 50 milliseconds: no period used up
+		assertTrue(clock.stop(1050 * MS));
+		assertEquals(0, clock.getMainLeft(Mark.W));
+		assertEquals(3, clock.getPeriodsLeft(Mark.W));
+		clock.start(Mark.W, 0);
+		assertTrue(clock.stop(150 * MS));
+		assertEquals(2, clock.getPeriodsLeft(Mark.W));
+		clock.start(Mark.W, 0);
+		assertEquals(200 * MS, clock.timeLeft(0));
+		assertFalse(clock.stop(200 * MS));
+		assertEquals(0, clock.getPeriodsLeft(Mark.W));
+	}
+
+	/**
+	 * Tests whether the tasks of the timer wheel run after their delay, also when
+	 * that is more than a turn of the wheel, and whether a cancelled task does
+	 * not run.
+	 */
+	@Test
+	void testTimerWheel() throws Exception {
+		TimerWheel timers = new TimerWheel(5, 8);
+		timers.start();
+		CountDownLatch ran = new CountDownLatch(2);
+		long start = System.nanoTime();
+		long[] when = new long[2];
+		timers.schedule(() -> {
+			when[0] = System.nanoTime();
+			ran.countDown();
+		}, 20);
+		timers.schedule(() -> {
+			when[1] = System.nanoTime();
+			ran.countDown();
+		}, 100);
+		TimerWheel.Timeout cancelled = timers.schedule(() -> ran.countDown(), 10);
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+		assertTrue(when[0] - start >= 20 * MS);
+		assertTrue(when[1] - start >= 100 * MS);
+		assertTrue(cancelled.isCancelled());
+		timers.close();
+	}
+
+}
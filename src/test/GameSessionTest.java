@@ -0,0 +1,157 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import exceptions.ExitProgram;
+import game.Mark;
+import server.GameClock;
+import server.GameSession;
+import server.TimerWheel;
+
+class GameSessionTest {
+
+	/**
+	 * Two sessions to test, played at the same time.
+	 */
+	private GameSession session;
+	private GameSession other;
+
+	/**
+	 * To test whether an exception is thrown.
+	 */
+	boolean thrown;
+
+	/**
+	 * Creates and starts two new sessions on a 4x4 board, without players.
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		session = new GameSession(0, 4, null, null);
+		other = new GameSession(1, 4, null, null);
+		session.start();
+		other.start();
+	}
+
+	/**
+	 * Tests whether it is nobody's turn until the session is started, and whether
+	 * starting it gives black its turn.
+	 */
+	@Test
+	void testStart() throws Exception {
+		GameSession waiting = new GameSession(2, 4, null, null);
+		assertFalse(waiting.isTurn(Mark.B));
+		assertFalse(waiting.isTurn(Mark.W));
+		waiting.start();
+		assertTrue(waiting.isTurn(Mark.B));
+		assertTrue(waiting.awaitTurn(Mark.B));
+	}
+
+	/**
+	 * Tests whether the turn goes from black to white and back, and whether the
+	 * last move and the passes are kept per session.
+	 */
+	@Test
+	void testTurns() throws Exception {
+		assertTrue(session.isTurn(Mark.B));
+		assertFalse(session.isTurn(Mark.W));
+		session.doMove(Mark.B, 5);
+		session.endTurn();
+		assertTrue(session.isTurn(Mark.W));
+		assertEquals(5, session.getLastMove());
+		session.doPass();
+		session.endTurn();
+		assertEquals(-1, session.getLastMove());
+		assertEquals(1, session.getNoPasses());
+		assertTrue(other.isTurn(Mark.B));
+		assertEquals(Mark.U, other.getBoard().getMark(5));
+		assertEquals(-1, other.getLastMove());
+	}
+
+	/**
+	 * Tests whether an illegal move is refused without changing the board.
+	 */
+	@Test
+	void testIllegalMove() throws Exception {
+		session.doMove(Mark.B, 5);
+		try {
+			session.doMove(Mark.W, 5);
+		} catch (ExitProgram e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+		assertEquals(Mark.B, session.getBoard().getMark(5));
+		assertEquals(5, session.getLastMove());
+	}
+
+	/**
+	 * Tests whether a player waiting for its turn is woken up when the opponent
+	 * ends its turn, and when the session is closed.
+	 */
+	@Test
+	void testAwaitTurn() throws Exception {
+		Thread black = new Thread(() -> {
+			try {
+				session.awaitTurn(Mark.B);
+				session.doMove(Mark.B, 0);
+				session.endTurn();
+			} catch (InterruptedException | ExitProgram e) {
+				thrown = true;
+			}
+		});
+		black.start();
+		assertTrue(session.awaitTurn(Mark.W));
+		assertEquals(Mark.B, session.getBoard().getMark(0));
+		black.join();
+		Thread closer = new Thread(() -> session.close());
+		closer.start();
+		assertFalse(session.awaitTurn(Mark.B));
+		assertTrue(session.isClosed());
+		assertFalse(thrown);
+	}
+
+	/**
+	 * Tests whether the session is closed when the flag of the player whose turn
+	 * it is falls, and not while the players keep moving in time.
+	 */
+	@Test
+	void testFlagFalls() throws Exception {
+		TimerWheel timers = new TimerWheel(10, 64);
+		timers.start();
+		session.startClock(new GameClock(100, 50, 1), timers);
+		session.doMove(Mark.B, 0);
+		session.endTurn();
+		other.startClock(new GameClock(100, 50, 1), timers);
+		assertTrue(session.awaitTurn(Mark.W));
+		assertFalse(session.awaitTurn(Mark.B));
+		assertTrue(session.isClosed());
+		assertEquals(Mark.W, session.getTimedOut());
+		assertEquals(Mark.B, other.getTimedOut());
+		timers.close();
+	}
+
+	/**
+	 * Tests whether the clock of black only starts running when the game starts.
+	 */
+	@Test
+	void testClockStartsWithGame() throws Exception {
+		TimerWheel timers = new TimerWheel(10, 64);
+		timers.start();
+		GameSession waiting = new GameSession(2, 4, null, null);
+		GameClock clock = new GameClock(100, 50, 1);
+		waiting.startClock(clock, timers);
+		Thread.sleep(300);
+		assertFalse(waiting.isClosed());
+		assertEquals(null, clock.getRunning());
+		waiting.start();
+		assertEquals(Mark.B, clock.getRunning());
+		assertFalse(waiting.awaitTurn(Mark.W));
+		assertEquals(Mark.B, waiting.getTimedOut());
+		timers.close();
+	}
+
+}
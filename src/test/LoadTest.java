@@ -0,0 +1,101 @@
+package test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import protocol.ProtocolMessages;
+import server.Server;
+
+/**
+ * Load test of the server: starts a server in this JVM, connects many clients
+ * to it and lets every client finish the handshake and get its game, so every
+ * ClientHandler ends up waiting in a game. Then reports the heap in use and the
+ * number of live threads. Not a JUnit test, since it needs a free port 8888 and
+ * a raised limit on open files; run it with the number of connections as
+ * argument (10000 by default). Run it with -Dgo.threads=virtual on Java 21 or
+ * newer to compare virtual threads with platform threads, or with
+ * -Dgo.transport=nio to compare with the event loops of the NioTransport.
+ */
+public class LoadTest {
+
+	/**
+	 * The clients connected to the server.
+	 */
+	private static List<Socket> clients = new ArrayList<>();
+
+	/**
+	 * Starts the server, connects the clients and prints the results.
+	 */
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		PrintStream console = System.out;
+		// the server tells about every connection, which is not what is measured here
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		Server server = new Server(9);
+		Thread serverThread = new Thread(server);
+		serverThread.setDaemon(true);
+		serverThread.start();
+		Thread.sleep(1000);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < connections; i++) {
+			Socket sock = new Socket("127.0.0.1", 8888);
+			clients.add(sock);
+			send(sock, "H;1.0;load" + i);
+			readLine(sock);
+		}
+		// which clients play against each other is up to the matchmaker, but every
+		// client gets the start message, and black its first turn
+		for (Socket sock : clients) {
+			if (readLine(sock).endsWith(String.valueOf(ProtocolMessages.BLACK))) {
+				readLine(sock);
+			}
+		}
+		long seconds = (System.nanoTime() - start) / 1000000000;
+
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		long heap = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+		console.println(connections + " connections (" + server.getSessionCount() + " games) in " + seconds
+				+ " s, " + Server.THREADS_PROPERTY + "=" + System.getProperty(Server.THREADS_PROPERTY, "platform") + ", "
+				+ Server.TRANSPORT_PROPERTY + "=" + System.getProperty(Server.TRANSPORT_PROPERTY, "socket"));
+		console.println("Heap in use: " + heap + " MB (client sockets included), live threads: "
+				+ Thread.activeCount());
+
+		for (Socket sock : clients) {
+			sock.close();
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Sends a line to the server.
+	 */
+	private static void send(Socket sock, String line) throws IOException {
+		OutputStream out = sock.getOutputStream();
+		out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+		out.flush();
+	}
+
+	/**
+	 * Reads a line from the server without a buffered reader, so the clients
+	 * themselves take up as little of the heap as possible.
+	 */
+	private static String readLine(Socket sock) throws IOException {
+		InputStream in = sock.getInputStream();
+		StringBuilder line = new StringBuilder();
+		int c = in.read();
+		while (c != '\n' && c != -1) {
+			line.append((char) c);
+			c = in.read();
+		}
+		return line.toString();
+	}
+
+}
@@ -0,0 +1,135 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import game.Mark;
+import server.GameClient;
+import server.GameSession;
+import server.Matchmaker;
+import server.Server;
+
+class MatchmakerTest {
+
+	/**
+	 * A client that only remembers what it is told.
+	 */
+	static class TestClient implements GameClient {
+		private Mark mark;
+		private volatile GameSession session;
+
+		public String getName() {
+			return "test";
+		}
+
+		public void setMark(Mark mark) {
+			this.mark = mark;
+		}
+
+		public Mark getMark() {
+			return mark;
+		}
+
+		public void setSession(GameSession session) {
+			this.session = session;
+		}
+	}
+
+	/**
+	 * The server the sessions are started on, and its matchmaker.
+	 */
+	private Server server;
+	private Matchmaker matchmaker;
+
+	/**
+	 * Creates a server for 9x9 games.
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		server = new Server(9);
+		matchmaker = server.getMatchmaker();
+	}
+
+	/**
+	 * Stops the threads of the server.
+	 */
+	@AfterEach
+	void tearDown() throws Exception {
+		server.close();
+	}
+
+	/**
+	 * Tests whether only clients asking for the same board size are paired, and
+	 * whether a preferred colour is given.
+	 */
+	@Test
+	void testPairing() throws Exception {
+		TestClient a = new TestClient();
+		TestClient b = new TestClient();
+		TestClient c = new TestClient();
+		matchmaker.enqueue(a, "H;1.0;a;W");
+		matchmaker.enqueue(b, "H;1.0;b;B;13");
+		assertNull(a.session);
+		assertEquals(2, matchmaker.getWaitingCount());
+		matchmaker.enqueue(c, "H;1.0;c;W");
+		assertNotNull(a.session);
+		assertSame(a.session, c.session);
+		assertEquals(Mark.W, a.getMark());
+		assertEquals(Mark.B, c.getMark());
+		assertEquals(9, a.session.getBoard().getBoardSize());
+		assertEquals(1, matchmaker.getWaitingCount());
+	}
+
+	/**
+	 * Tests whether a client that leaves while waiting is not paired anymore.
+	 */
+	@Test
+	void testCancel() throws Exception {
+		TestClient a = new TestClient();
+		TestClient b = new TestClient();
+		matchmaker.enqueue(a, 9, null);
+		server.removeClient(a);
+		matchmaker.enqueue(b, 9, null);
+		assertNull(a.session);
+		assertNull(b.session);
+		assertEquals(1, matchmaker.getWaitingCount());
+	}
+
+	/**
+	 * Tests whether every client gets exactly one opponent when many clients come
+	 * in at the same time.
+	 */
+	@Test
+	void testStorm() throws Exception {
+		int perThread = 2000;
+		TestClient[][] clients = new TestClient[4][perThread];
+		Thread[] threads = new Thread[clients.length];
+		for (int t = 0; t < threads.length; t++) {
+			TestClient[] mine = clients[t];
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < mine.length; i++) {
+					mine[i] = new TestClient();
+					matchmaker.enqueue(mine[i], 9, null);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, matchmaker.getWaitingCount());
+		assertEquals(clients.length * perThread / 2, server.getSessionCount());
+		for (TestClient[] mine : clients) {
+			for (TestClient client : mine) {
+				assertSame(client, client.session.getPlayer(client.getMark()));
+			}
+		}
+	}
+
+}
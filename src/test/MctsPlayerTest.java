@@ -0,0 +1,172 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import game.ArrayBoard;
+import game.BitBoard;
+import game.Board;
+import game.GoBoard;
+import game.Mark;
+import game.MctsPlayer;
+import game.Playout;
+import game.TranspositionTable;
+
+class MctsPlayerTest {
+
+	/**
+	 * Tests whether the player does exactly the number of playouts asked for and
+	 * returns a legal move.
+	 */
+	@Test
+	void testBudget() throws Exception {
+		GoBoard board = GoBoard.newBoard(5, false);
+		MctsPlayer player = new MctsPlayer("mcts", Mark.B, 500, 0);
+		int move = player.determineMove(board);
+		assertEquals(500, player.getPlayouts());
+		assertTrue(player.getPlayoutRate() > 0);
+		assertTrue(board.isLegal(move, Mark.B));
+	}
+
+	/**
+	 * Tests whether the player captures a big chain that is in atari, on any kind
+	 * of board: an ArrayBoard is searched on directly, a Board and a BitBoard are
+	 * copied stone by stone first. The seed makes the search repeatable.
+	 */
+	@Test
+	void testCapture() throws Exception {
+		for (GoBoard board : new GoBoard[] { new ArrayBoard(5, false), new Board(5, false), new BitBoard(5, false) }) {
+			// the first three rows are white, black and white, but for the last
+			// intersection of the top row, which is the last liberty of both the white
+			// chain on top and the black chain; put with putStone, so a Board has its
+			// chains too
+			for (int col = 0; col < 5; col++) {
+				if (col < 4) {
+					board.putStone(col, 0, Mark.W);
+				}
+				board.putStone(col, 1, Mark.B);
+				board.putStone(col, 2, Mark.W);
+			}
+			MctsPlayer player = new MctsPlayer("mcts", Mark.B, 10000, 0);
+			player.setSeed(1);
+			assertEquals(4, player.determineMove(board));
+		}
+	}
+
+	/**
+	 * Tests whether a playout ends the game, leaves no empty intersection that is
+	 * not an eye or illegal, and plays the same game again from the same seed.
+	 */
+	@Test
+	void testPlayout() throws Exception {
+		ArrayBoard first = new ArrayBoard(9, false);
+		ArrayBoard second = new ArrayBoard(9, false);
+		boolean blackWins = new Playout(42).run(first, Mark.B, 0);
+		assertEquals(blackWins, new Playout(42).run(second, Mark.B, 0));
+		assertEquals(first.toString(), second.toString());
+		for (int k = 0; k < first.getCount(Mark.U); k++) {
+			int i = first.getEmpty(k);
+			assertTrue(first.isEye(i, Mark.B) || !first.isLegal(i, Mark.B));
+			assertTrue(first.isEye(i, Mark.W) || !first.isLegal(i, Mark.W));
+		}
+	}
+
+	/**
+	 * Tests whether a search fills the transposition table, and whether a player
+	 * that shares the table starts from what the other one found: after a long
+	 * search of the capture, a short one is enough.
+	 */
+	@Test
+	void testTable() throws Exception {
+		GoBoard board = GoBoard.newBoard(5, false);
+		for (int col = 0; col < 5; col++) {
+			if (col < 4) {
+				board.addStone(col, 0, Mark.W);
+			}
+			board.addStone(col, 1, Mark.B);
+			board.addStone(col, 2, Mark.W);
+		}
+		TranspositionTable table = new TranspositionTable(1 << 16);
+		MctsPlayer first = new MctsPlayer("first", Mark.B, 10000, 0, null, false, table);
+		first.setSeed(1);
+		assertEquals(4, first.determineMove(board));
+		assertTrue(table.size() > 0);
+		MctsPlayer second = new MctsPlayer("second", Mark.B, 100, 0, null, false, table);
+		second.setSeed(2);
+		assertEquals(4, second.determineMove(board));
+		MctsPlayer none = new MctsPlayer("none", Mark.B, 100, 0, null, false, null);
+		assertTrue(board.isLegal(none.determineMove(board), Mark.B));
+	}
+
+	/**
+	 * Tests whether the next search continues from the part of the tree after the
+	 * reply of the opponent, and starts anew when the board is not what the tree
+	 * expects.
+	 */
+	@Test
+	void testReuse() throws Exception {
+		GoBoard board = GoBoard.newBoard(5, false);
+		MctsPlayer player = new MctsPlayer("mcts", Mark.B, 2000, 0, null, false, null);
+		player.makeMove(board);
+		assertEquals(0, player.getReusedPlayouts());
+		int reply = board.isLegal(12, Mark.W) ? 12 : 13;
+		board.putStone(board.getCol(reply), board.getRow(reply), Mark.W);
+		player.opponentMoved(reply);
+		player.makeMove(board);
+		assertTrue(player.getReusedPlayouts() > 0);
+		assertEquals(2000, player.getPlayouts());
+		// told a pass, while the opponent put a stone on the board
+		int other = 0;
+		while (!board.isLegal(other, Mark.W)) {
+			other++;
+		}
+		board.putStone(board.getCol(other), board.getRow(other), Mark.W);
+		player.opponentMoved(-1);
+		player.makeMove(board);
+		assertEquals(0, player.getReusedPlayouts());
+	}
+
+	/**
+	 * Tests whether the threads of a pool together do exactly the number of
+	 * playouts asked for, in one shared tree and in a tree per thread sharing a
+	 * transposition table. With a tree per thread, the counts of the moves at the
+	 * root should add up to exactly those playouts (and those of the kept trees),
+	 * so the counts the trees got from the table are not counted once per tree.
+	 * Which move is found depends on how the threads take turns, so that is left
+	 * to testCapture.
+	 */
+	@Test
+	void testParallel() throws Exception {
+		ForkJoinPool threads = new ForkJoinPool(4);
+		for (boolean rootParallel : new boolean[] { false, true }) {
+			GoBoard board = GoBoard.newBoard(5, false);
+			for (int col = 0; col < 5; col++) {
+				if (col < 4) {
+					board.addStone(col, 0, Mark.W);
+				}
+				board.addStone(col, 1, Mark.B);
+				board.addStone(col, 2, Mark.W);
+			}
+			MctsPlayer player = new MctsPlayer("mcts", Mark.B, 10000, 0, threads, rootParallel,
+					new TranspositionTable(MctsPlayer.TABLE_SIZE));
+			for (int search = 0; search < 2; search++) {
+				int move = player.determineMove(board);
+				assertTrue(board.isLegal(move, Mark.B));
+				assertEquals(10000, player.getPlayouts());
+				int visits = 0;
+				for (int i = -1; i < 25; i++) {
+					visits += player.getVisits(i);
+				}
+				if (rootParallel) {
+					assertEquals(10000 + player.getReusedPlayouts(), visits);
+				}
+			}
+		}
+		threads.shutdown();
+	}
+
+}
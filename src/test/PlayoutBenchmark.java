@@ -0,0 +1,53 @@
+package test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import game.GoBoard;
+import game.Mark;
+import game.MctsPlayer;
+import game.TranspositionTable;
+
+/**
+ * Benchmark of the engine: lets an MctsPlayer search the empty board for a few
+ * moves and reports the number of playouts per second, which is what every
+ * change to the board or the playouts should make go up. Not a JUnit test,
+ * since it takes a while; run it with the board size, the seconds per move, the
+ * number of threads and "tree" or "root" as arguments (9, 2, 1 and tree by
+ * default), to see how the search scales with the number of cores.
+ */
+public class PlayoutBenchmark {
+
+	/**
+	 * The number of moves searched; the first one warms up the JIT compiler and
+	 * is not counted.
+	 */
+	private static final int MOVES = 4;
+
+	/**
+	 * Runs the searches and prints the results.
+	 */
+	public static void main(String[] args) throws Exception {
+		int boardSize = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+		long millis = args.length > 1 ? Long.parseLong(args[1]) * 1000 : 2000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+		boolean rootParallel = args.length > 3 && args[3].equals("root");
+		GoBoard board = GoBoard.newBoard(boardSize, false);
+		MctsPlayer player = new MctsPlayer("benchmark", Mark.B, 0, millis,
+				threads > 1 ? new ForkJoinPool(threads) : null, rootParallel,
+				new TranspositionTable(MctsPlayer.TABLE_SIZE));
+		long playouts = 0;
+		double seconds = 0;
+		for (int move = 0; move < MOVES; move++) {
+			player.determineMove(board);
+			System.out.println("Move " + move + ": " + player.getPlayouts() + " playouts, "
+					+ Math.round(player.getPlayoutRate()) + " playouts/s");
+			if (move > 0) {
+				playouts += player.getPlayouts();
+				seconds += player.getPlayouts() / player.getPlayoutRate();
+			}
+		}
+		System.out.println(boardSize + "x" + boardSize + ", " + threads + " threads: " + Math.round(playouts / seconds)
+				+ " playouts/s");
+	}
+
+}
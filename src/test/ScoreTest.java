@@ -138,7 +138,7 @@ public class ScoreTest {
 			}
 		} catch (ExitProgram e) {
 			System.out.println("Goodbye!");
-			board.getGUI().stopGUI();
+			board.close();
 		}
 	}
 }
@@ -0,0 +1,103 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import server.ServerLog;
+import server.ServerLog.Level;
+
+class ServerLogTest {
+
+	/**
+	 * Where the log prints its messages.
+	 */
+	private ByteArrayOutputStream bytes;
+	private PrintStream out;
+
+	/**
+	 * Creates an empty stream for the log to print to.
+	 */
+	@BeforeEach
+	void setUp() {
+		bytes = new ByteArrayOutputStream();
+		out = new PrintStream(bytes, true);
+	}
+
+	/**
+	 * Returns the lines printed so far.
+	 */
+	private String[] lines() {
+		String text = bytes.toString().replace("\r", "");
+		return text.isEmpty() ? new String[0] : text.split("\n");
+	}
+
+	/**
+	 * Tests whether each {} is replaced by the next argument, and extra {} are
+	 * left alone.
+	 */
+	@Test
+	void testFormat() {
+		ServerLog log = new ServerLog(out, Level.DEBUG, 1, 1000);
+		log.start();
+		log.info("{} and {} will play in game {}!", "Joris", "Anna", 3);
+		log.info("no arguments");
+		log.info("{}{}{}{}", 1, 2, 3);
+		log.close();
+		String[] printed = lines();
+		assertEquals(3, printed.length);
+		assertEquals("Joris and Anna will play in game 3!", printed[0]);
+		assertEquals("no arguments", printed[1]);
+		assertEquals("123{}", printed[2]);
+	}
+
+	/**
+	 * Tests whether messages below the level are not logged, and DEBUG messages
+	 * only for one game in every N.
+	 */
+	@Test
+	void testLevelAndSample() {
+		ServerLog log = new ServerLog(out, Level.INFO, 2, 1000);
+		assertFalse(log.isLogged(Level.DEBUG, 0));
+		assertTrue(log.isLogged(Level.INFO, -1));
+		assertTrue(log.isLogged(Level.WARN, -1));
+		assertFalse(log.isLogged(Level.OFF, -1));
+
+		log = new ServerLog(out, Level.DEBUG, 2, 1000);
+		log.start();
+		log.debug(0, "game {}", 0);
+		log.debug(1, "game {}", 1);
+		log.debug(2, "game {}", 2);
+		log.debug(-1, "no game");
+		log.close();
+		String[] printed = lines();
+		assertEquals(3, printed.length);
+		assertEquals("game 0", printed[0]);
+		assertEquals("game 2", printed[1]);
+		assertEquals("no game", printed[2]);
+	}
+
+	/**
+	 * Tests whether messages over the rate are dropped instead of printed.
+	 */
+	@Test
+	void testRate() {
+		ServerLog log = new ServerLog(out, Level.INFO, 1, 5);
+		log.start();
+		for (int i = 0; i < 20; i++) {
+			log.info("message {}", i);
+		}
+		log.close();
+		String[] printed = lines();
+		assertTrue(printed.length >= 5);
+		assertTrue(printed.length < 20);
+		assertEquals("message 0", printed[0]);
+	}
+
+}
@@ -0,0 +1,102 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import exceptions.ProtocolException;
+import game.Mark;
+import server.GameSession;
+import server.ServerMessages;
+
+class ServerMessagesTest {
+
+	/**
+	 * The session the messages are about.
+	 */
+	private GameSession session;
+
+	/**
+	 * To test whether an exception is thrown.
+	 */
+	boolean thrown;
+
+	/**
+	 * Creates a new session on a 4x4 board, without players.
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		session = new GameSession(0, 4, null, null);
+	}
+
+	/**
+	 * Tests whether TURN and RESULT carry the board, or with the delta extension
+	 * the move and what it captured.
+	 */
+	@Test
+	void testTurnAndResult() throws Exception {
+		assertEquals("T;UUUUUUUUUUUUUUUU;P", ServerMessages.turn(session, false));
+		assertEquals("T;P;", ServerMessages.turn(session, true));
+		session.doMove(Mark.B, 1);
+		session.endTurn();
+		assertEquals("T;1;", ServerMessages.turn(session, true));
+		session.doMove(Mark.W, 0);
+		session.endTurn();
+		// black captures the white stone in the corner
+		session.doMove(Mark.B, 4);
+		assertEquals("R;V;4;0", ServerMessages.result(session, true));
+		assertEquals("R;V;UBUUBUUUUUUUUUUU", ServerMessages.result(session, false));
+		session.endTurn();
+		assertEquals("T;4;0", ServerMessages.turn(session, true));
+		assertEquals("T;UBUUBUUUUUUUUUUU;4", ServerMessages.turn(session, false));
+		assertEquals("S;UBUUBUUUUUUUUUUU", ServerMessages.board(session));
+		session.doPass();
+		assertEquals("R;V;P;", ServerMessages.result(session, true));
+	}
+
+	/**
+	 * Tests whether the extensions asked for in the handshake are recognised and
+	 * confirmed.
+	 */
+	@Test
+	void testHandshake() {
+		assertTrue(ServerMessages.asksFor("H;1.0;Joris;B;;delta", "delta"));
+		assertTrue(ServerMessages.asksFor("H;1.0;Joris;B;9;other,delta", "delta"));
+		assertFalse(ServerMessages.asksFor("H;1.0;Joris;B;9", "delta"));
+		assertFalse(ServerMessages.asksFor("H;1.0;Joris;delta", "delta"));
+		assertEquals("delta", ServerMessages.accept("H;1.0;Joris;B;;delta"));
+		assertEquals("delta,binary,stream", ServerMessages.accept("H;1.0;Joris;B;;stream,other,binary,delta"));
+		assertEquals("", ServerMessages.accept("H;1.0;Joris;B;9"));
+		assertTrue(ServerMessages.handshake("delta").endsWith("!;delta"));
+		assertTrue(ServerMessages.handshake("delta,batch").endsWith("!;delta,batch"));
+		assertTrue(ServerMessages.handshake("").endsWith("!"));
+		assertTrue(ServerMessages.isSync("S"));
+		assertFalse(ServerMessages.isSync("S;1"));
+	}
+
+	/**
+	 * Tests whether moves and passes are read, and other messages refused.
+	 */
+	@Test
+	void testParseMove() throws Exception {
+		assertEquals(12, ServerMessages.parseMove("M;12"));
+		assertEquals(-1, ServerMessages.parseMove("M;P"));
+		try {
+			ServerMessages.parseMove("M;-3");
+		} catch (ProtocolException e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+		thrown = false;
+		try {
+			ServerMessages.parseMove("Q");
+		} catch (ProtocolException e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+	}
+
+}
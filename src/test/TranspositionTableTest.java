@@ -0,0 +1,53 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import game.TranspositionTable;
+
+class TranspositionTableTest {
+
+	/**
+	 * Tests whether statistics are added up per key, and missing keys found
+	 * empty.
+	 */
+	@Test
+	void testAddGet() {
+		TranspositionTable table = new TranspositionTable(100);
+		assertEquals(128, table.capacity());
+		assertEquals(0, table.get(12345L));
+		table.add(12345L, 1, 1);
+		table.add(12345L, 1, 0);
+		table.add(-7L, 3, 2);
+		long entry = table.get(12345L);
+		assertEquals(2, TranspositionTable.getPlayouts(entry));
+		assertEquals(1, TranspositionTable.getWins(entry));
+		assertEquals(3, TranspositionTable.getPlayouts(table.get(-7L)));
+		assertEquals(0, table.get(12346L));
+		assertEquals(2, table.size());
+		table.clear();
+		assertEquals(0, table.get(12345L));
+		assertEquals(0, table.size());
+	}
+
+	/**
+	 * Tests whether a full bucket gives up the entry with the fewest playouts. A
+	 * table of four entries has a single bucket.
+	 */
+	@Test
+	void testReplace() {
+		TranspositionTable table = new TranspositionTable(4);
+		table.add(1L, 5, 0);
+		table.add(2L, 1, 0);
+		table.add(3L, 7, 0);
+		table.add(4L, 3, 0);
+		table.add(5L, 2, 1);
+		assertEquals(0, table.get(2L));
+		assertEquals(2, TranspositionTable.getPlayouts(table.get(5L)));
+		assertEquals(1, TranspositionTable.getWins(table.get(5L)));
+		assertEquals(5, TranspositionTable.getPlayouts(table.get(1L)));
+		assertEquals(4, table.size());
+	}
+
+}